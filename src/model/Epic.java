@@ -1,11 +1,14 @@
 package model;
 
+import util.IntHashSet;
+
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Objects;
+import java.util.function.IntConsumer;
 
 public class Epic extends Task {
-    private ArrayList<Integer> subtasksId = new ArrayList<>();
+    private IntHashSet subtasksId = new IntHashSet();
     private LocalDateTime endTime;
 
     public Epic(String name, String description) {
@@ -16,28 +19,50 @@ public class Epic extends Task {
     public Epic(Epic epic) {
         super(epic);
         if (epic != null) {
-            subtasksId.addAll(new ArrayList<>(epic.getSubtasks()));
+            subtasksId = new IntHashSet(epic.subtasksId);
             endTime = epic.getEndTime();
         }
     }
 
+    // Идентификаторы подзадач в порядке возрастания (порядке создания)
     public ArrayList<Integer> getSubtasks() {
-        return new ArrayList<>(subtasksId);
+        ArrayList<Integer> subtasks = new ArrayList<>(subtasksId.size());
+        for (int id : subtasksId.toSortedArray()) {
+            subtasks.add(id);
+        }
+        return subtasks;
     }
 
     public void setSubtasks(final ArrayList<Integer> subtasksId) {
-        this.subtasksId = new ArrayList<>(subtasksId);
+        checkWritable();
+        this.subtasksId = new IntHashSet();
+        subtasksId.forEach(this.subtasksId::add);
+    }
+
+    public void forEachSubtask(IntConsumer action) {
+        subtasksId.forEach(action);
+    }
+
+    public int getSubtasksCount() {
+        return subtasksId.size();
     }
 
     public void clearAllSubtasks() {
+        checkWritable();
         subtasksId.clear();
     }
 
-    public void removeSubtaskById(Integer id) {
+    public void removeSubtaskById(int id) {
+        checkWritable();
         subtasksId.remove(id);
     }
 
+    public boolean hasSubtask(int id) {
+        return subtasksId.contains(id);
+    }
+
     public void addSubtask(int id) {
+        checkWritable();
         subtasksId.add(id);
     }
 
@@ -47,9 +72,20 @@ public class Epic extends Task {
     }
 
     public void setEndTime(LocalDateTime endTime) {
+        checkWritable();
         this.endTime = endTime;
     }
 
+    @Override
+    public Epic asReadOnly() {
+        if (isReadOnly()) {
+            return this;
+        }
+        Epic epic = new Epic(this);
+        epic.markReadOnly();
+        return epic;
+    }
+
     @Override
     public TaskType getType() {
         return TaskType.EPIC;
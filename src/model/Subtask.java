@@ -31,9 +31,20 @@ public class Subtask extends Task {
     }
 
     public void setEpicId(int epicId) {
+        checkWritable();
         this.epicId = epicId;
     }
 
+    @Override
+    public Subtask asReadOnly() {
+        if (isReadOnly()) {
+            return this;
+        }
+        Subtask subtask = new Subtask(this);
+        subtask.markReadOnly();
+        return subtask;
+    }
+
     @Override
     public TaskType getType() {
         return TaskType.SUBTASK;
@@ -13,6 +13,8 @@ public class Task {
     protected TaskStatus taskStatus;
     protected Duration duration; //in minutes
     protected LocalDate startTime;
+    private boolean isReadOnly;
+    private transient long startSortKey;
 
     public Task(String name, String description) {
         this.name = name;
@@ -49,6 +51,7 @@ public class Task {
     }
 
     public void setName(String name) {
+        checkWritable();
         this.name = name;
     }
 
@@ -57,6 +60,7 @@ public class Task {
     }
 
     public void setDescription(String description) {
+        checkWritable();
         this.description = description;
     }
 
@@ -65,6 +69,7 @@ public class Task {
     }
 
     public void setId(int id) {
+        checkWritable();
         this.id = id;
     }
 
@@ -73,6 +78,7 @@ public class Task {
     }
 
     public void setTaskStatus(TaskStatus taskStatus) {
+        checkWritable();
         this.taskStatus = taskStatus;
     }
 
@@ -85,6 +91,7 @@ public class Task {
     }
 
     public void setDuration(Duration duration) {
+        checkWritable();
         this.duration = duration;
     }
 
@@ -93,9 +100,51 @@ public class Task {
     }
 
     public void setStartTime(LocalDate startTime) {
+        checkWritable();
         this.startTime = startTime;
     }
 
+    public boolean isReadOnly() {
+        return isReadOnly;
+    }
+
+    // Неизменяемая копия задачи; для задачи, которая уже только для чтения, копия не создаётся
+    public Task asReadOnly() {
+        if (isReadOnly) {
+            return this;
+        }
+        Task task = new Task(this);
+        task.markReadOnly();
+        return task;
+    }
+
+    protected void markReadOnly() {
+        isReadOnly = true;
+        startSortKey = startSortKey(startTime, id);
+    }
+
+    // Ключ сортировки по времени начала; у задачи только для чтения он вычислен заранее
+    public long getStartSortKey() {
+        return isReadOnly ? startSortKey : startSortKey(startTime, id);
+    }
+
+    /**
+     * День начала от эпохи в старших 32 битах, id — в младших: порядок ключей совпадает с порядком
+     * «по времени начала, затем по id», а задачи без времени (EPOCH) оказываются в конце.
+     * Сравнение ключей не создаёт объектов.
+     */
+    public static long startSortKey(LocalDate startTime, int id) {
+        long day = startTime.isEqual(LocalDate.EPOCH) ? Integer.MAX_VALUE
+                : Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE - 1, startTime.toEpochDay()));
+        return (day << 32) + ((long) id - Integer.MIN_VALUE);
+    }
+
+    protected void checkWritable() {
+        if (isReadOnly) {
+            throw new UnsupportedOperationException("Задача " + id + " доступна только для чтения");
+        }
+    }
+
     public LocalDateTime getEndTime() {
         return LocalDateTime.of(startTime, LocalTime.MIN).plus(duration);
     }
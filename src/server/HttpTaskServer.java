@@ -2,29 +2,47 @@ package server;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
 import model.Epic;
 import model.Subtask;
 import model.Task;
 import model.TaskStatus;
+import model.TaskType;
 import service.Adapters;
 import service.ManagerRemoveException;
 import service.ManagerSaveException;
 import service.Managers;
 import service.TaskManager;
+import service.TaskManagerSnapshot;
+import service.UserHistoryStore;
+import util.VersionedCache;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static server.HttpTaskServer.Endpoint.DELETE_TASKS;
@@ -36,9 +54,20 @@ public class HttpTaskServer {
 
     private static final int PORT = 8080;
     private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int DEFAULT_HOT_TASKS = 10;
+    private static final int SCHEDULE_ATTEMPTS = 3;
+    // Заголовок с идентификатором пользователя: просмотры с ним попадают в историю этого пользователя
+    private static final String USER_HEADER = "X-User-Id";
     private final HttpServer httpServer;
     private final Gson gson;
     private final TaskManager taskManager;
+    private final UserHistoryStore userHistories;
+    // Готовые ответы на запросы полных списков: сериализуются заново только после изменения версии менеджера
+    private final VersionedCache<byte[]> prioritizedResponse = new VersionedCache<>();
+    private final Map<TaskType, VersionedCache<byte[]>> listResponses = new EnumMap<>(TaskType.class);
 
 
     public HttpTaskServer() throws IOException {
@@ -46,23 +75,38 @@ public class HttpTaskServer {
     }
 
     public HttpTaskServer(TaskManager taskManager) throws IOException {
+        this(taskManager, Managers.getDefaultUserHistories());
+    }
+
+    public HttpTaskServer(TaskManager taskManager, UserHistoryStore userHistories) throws IOException {
         this.taskManager = taskManager;
+        this.userHistories = userHistories;
         gson = new GsonBuilder().setPrettyPrinting().serializeNulls()
                 .registerTypeAdapter(Task.class, new Adapters.TaskAdapter())
                 .registerTypeAdapter(Epic.class, new Adapters.EpicAdapter())
                 .registerTypeAdapter(Subtask.class, new Adapters.SubtaskAdapter())
                 .create();
+        for (TaskType type : TaskType.values()) {
+            listResponses.put(type, new VersionedCache<>());
+        }
         httpServer = HttpServer.create(new InetSocketAddress("localhost", PORT), 0);
         httpServer.createContext("/tasks", this::handle);
 
     }
 
+    // Обработка запросов на нескольких потоках; менеджер должен быть потокобезопасным (ConcurrentTaskManager)
+    public HttpTaskServer(TaskManager taskManager, Executor executor) throws IOException {
+        this(taskManager);
+        httpServer.setExecutor(executor);
+    }
+
     public void start() {
         httpServer.start();
     }
 
     public void stop() {
         httpServer.stop(0);
+        userHistories.flush();
     }
 
     private void handle(HttpExchange httpExchange) throws IOException {
@@ -86,19 +130,33 @@ public class HttpTaskServer {
     private void handleGetTasks(HttpExchange httpExchange) throws IOException {
         String[] pathParts = httpExchange.getRequestURI().getPath().split("/");
         String query = httpExchange.getRequestURI().getQuery();
+        Map<String, String> params = getQueryParams(httpExchange);
         Optional<Integer> id = getId(httpExchange);
 
         if (pathParts.length == 2) {
-            writeResponse(httpExchange, gson.toJson(taskManager.getPrioritizedTasks()), 200);
+            if (query == null) {
+                writeCached(httpExchange, prioritizedResponse, taskManager.getVersion(),
+                        taskManager::getPrioritizedTasksView);
+                return;
+            }
+            Optional<LocalDate> from = parseDate(params.get("from"));
+            Optional<LocalDate> to = parseDate(params.get("to"));
+            if (from.isEmpty() || to.isEmpty() || from.get().isAfter(to.get())) {
+                writeResponse(httpExchange, "Параметры from и to должны быть датами в формате дд.ММ.гггг, " +
+                        "from не позже to", 400);
+                return;
+            }
+            writeResponse(httpExchange, gson.toJson(taskManager.getTasksOverlapping(from.get(), to.get())), 200);
+            return;
         }
         if (pathParts.length == 4) {
             if (id.isEmpty()) {
                 writeResponse(httpExchange, "Некорректный идентификатор эпика", 400);
                 return;
             }
-            Epic epic = taskManager.getEpicById(id.get());
+            Epic epic = taskManager.getEpicView(id.get());
             if (epic != null) {
-                writeResponse(httpExchange, gson.toJson(taskManager.getListOfAllEpicSubtasks(epic)), 200);
+                writeResponse(httpExchange, gson.toJson(taskManager.getEpicSubtasksView(epic.getId())), 200);
                 return;
             }
             writeResponse(httpExchange, "Эпик с идентификатором id=" + id.get()
@@ -106,15 +164,15 @@ public class HttpTaskServer {
         }
         if (pathParts.length == 3) {
             if (pathParts[2].equals("task")) {
-                if (query == null) {
-                    writeResponse(httpExchange, gson.toJson(taskManager.getListOfAllTasks()), 200);
+                if (query == null || isListRequest(params)) {
+                    writeList(httpExchange, params, TaskType.TASK, TaskManagerSnapshot::getTasksPage);
                     return;
                 }
                 if (id.isEmpty()) {
                     writeResponse(httpExchange, "Некорректный идентификатор задачи", 400);
                     return;
                 }
-                Task task = taskManager.getTaskById(id.get());
+                Task task = view(httpExchange, id.get(), TaskManagerSnapshot::getTask, taskManager::getTaskView);
                 if (task != null) {
                     writeResponse(httpExchange, gson.toJson(task), 200);
                     return;
@@ -124,15 +182,15 @@ public class HttpTaskServer {
             }
 
             if (pathParts[2].equals("epic")) {
-                if (query == null) {
-                    writeResponse(httpExchange, gson.toJson(taskManager.getListOfAllEpics()), 200);
+                if (query == null || isListRequest(params)) {
+                    writeList(httpExchange, params, TaskType.EPIC, TaskManagerSnapshot::getEpicsPage);
                     return;
                 }
                 if (id.isEmpty()) {
                     writeResponse(httpExchange, "Некорректный идентификатор эпика", 400);
                     return;
                 }
-                Epic epic = taskManager.getEpicById(id.get());
+                Epic epic = view(httpExchange, id.get(), TaskManagerSnapshot::getEpic, taskManager::getEpicView);
                 if (epic != null) {
                     writeResponse(httpExchange, gson.toJson(epic), 200);
                     return;
@@ -142,15 +200,16 @@ public class HttpTaskServer {
             }
 
             if (pathParts[2].equals("subtask")) {
-                if (query == null) {
-                    writeResponse(httpExchange, gson.toJson(taskManager.getListOfAllSubtasks()), 200);
+                if (query == null || isListRequest(params)) {
+                    writeList(httpExchange, params, TaskType.SUBTASK, TaskManagerSnapshot::getSubtasksPage);
                     return;
                 }
                 if (id.isEmpty()) {
                     writeResponse(httpExchange, "Некорректный идентификатор подзадачи", 400);
                     return;
                 }
-                Subtask subtask = taskManager.getSubtaskById(id.get());
+                Subtask subtask = view(httpExchange, id.get(), TaskManagerSnapshot::getSubtask,
+                        taskManager::getSubtaskView);
                 if (subtask != null) {
                     writeResponse(httpExchange, gson.toJson(subtask), 200);
                     return;
@@ -159,7 +218,49 @@ public class HttpTaskServer {
                         + " не найдена", 404);
             }
 
+            if (pathParts[2].equals("search")) {
+                String searchQuery = params.get("q");
+                Optional<Integer> limit = params.containsKey("limit")
+                        ? parseInt(params.get("limit")) : Optional.of(DEFAULT_PAGE_SIZE);
+                if (searchQuery == null || searchQuery.isBlank()) {
+                    writeResponse(httpExchange, "Не задан параметр q", 400);
+                    return;
+                }
+                if (limit.isEmpty() || limit.get() <= 0) {
+                    writeResponse(httpExchange, "Параметр limit должен быть положительным числом", 400);
+                    return;
+                }
+                writeResponse(httpExchange, gson.toJson(taskManager.search(searchQuery,
+                        Math.min(limit.get(), MAX_PAGE_SIZE))), 200);
+            }
+
+            if (pathParts[2].equals("hot")) {
+                Optional<Integer> limit = params.containsKey("limit")
+                        ? parseInt(params.get("limit")) : Optional.of(DEFAULT_HOT_TASKS);
+                if (limit.isEmpty() || limit.get() <= 0) {
+                    writeResponse(httpExchange, "Параметр limit должен быть положительным числом", 400);
+                    return;
+                }
+                writeResponse(httpExchange, gson.toJson(taskManager.getHotTasks(limit.get())), 200);
+            }
+
+            if (pathParts[2].equals("slot")) {
+                Optional<Integer> duration = parseInt(params.get("duration"));
+                Optional<LocalDate> from = parseDate(params.get("from"));
+                if (duration.isEmpty() || duration.get() < 0 || from.isEmpty()) {
+                    writeResponse(httpExchange, "Параметры duration (минуты) и from (дд.ММ.гггг) обязательны", 400);
+                    return;
+                }
+                LocalDate slot = taskManager.findEarliestSlot(Duration.ofMinutes(duration.get()), from.get());
+                writeResponse(httpExchange, gson.toJson(slot.format(DATE_FORMATTER)), 200);
+            }
+
             if (pathParts[2].equals("history")) {
+                String userId = getUserId(httpExchange);
+                if (userId != null) {
+                    writeResponse(httpExchange, gson.toJson(getUserHistory(userId)), 200);
+                    return;
+                }
                 writeResponse(httpExchange, gson.toJson(taskManager.getHistory().stream()
                         .map(Task::getId).collect(Collectors.toList())), 200);
             }
@@ -217,6 +318,28 @@ public class HttpTaskServer {
                     return;
                 }
 
+                // Автоматическая расстановка: каждая задача ставится на самую раннюю свободную дату не раньше from,
+                // все задачи создаются одним пакетом
+                if (path.equals("schedule") || path.equals("schedule/")) {
+                    Optional<LocalDate> from = parseDate(getQueryParams(httpExchange).get("from"));
+                    if (from.isEmpty()) {
+                        writeResponse(httpExchange, "Параметр from должен быть датой в формате дд.ММ.гггг", 400);
+                        return;
+                    }
+                    List<Task> tasks = gson.fromJson(body, new TypeToken<List<Task>>() {
+                    }.getType());
+                    for (Task task : tasks) {
+                        if (task.getDuration() == null || task.getDuration().isNegative()) {
+                            writeResponse(httpExchange, "Поле duration должно быть неотрицательным числом минут",
+                                    400);
+                            return;
+                        }
+                    }
+                    schedule(tasks, from.get());
+                    writeResponse(httpExchange, gson.toJson(tasks), 201);
+                    return;
+                }
+
                 if (path.equals("subtask/")) {
                     Subtask subtask = gson.fromJson(body, Subtask.class);
                     if (subtask.getEpicId() == 0) {
@@ -240,6 +363,49 @@ public class HttpTaskServer {
         }
     }
 
+    // Даты расставляются до создания: задачи пакета проверяются и между собой, а пакет применяется целиком.
+    // Если свободную дату между расстановкой и применением занял другой запрос, расстановка повторяется
+    private void schedule(List<Task> tasks, LocalDate from) {
+        for (int attempt = 1; ; attempt++) {
+            planSchedule(tasks, from);
+            try {
+                taskManager.createAll(tasks);
+                return;
+            } catch (ManagerSaveException ex) {
+                if (attempt == SCHEDULE_ATTEMPTS) {
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    private void planSchedule(List<Task> tasks, LocalDate from) {
+        List<Task> planned = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            LocalDate notBefore = from;
+            Task conflict;
+            do {
+                task.setStartTime(taskManager.findEarliestSlot(task.getDuration(), notBefore));
+                conflict = findConflict(planned, task);
+                if (conflict != null) {
+                    // границы задач не могут совпадать, поэтому следующая попытка — со следующего дня
+                    notBefore = conflict.getEndTime().toLocalDate().plusDays(1);
+                }
+            } while (conflict != null);
+            planned.add(task);
+        }
+    }
+
+    private static Task findConflict(List<Task> planned, Task task) {
+        LocalDateTime start = task.getStartTime().atStartOfDay();
+        for (Task other : planned) {
+            if (!start.isAfter(other.getEndTime()) && !other.getStartTime().atStartOfDay().isAfter(task.getEndTime())) {
+                return other;
+            }
+        }
+        return null;
+    }
+
     private void handleDeleteTasks(HttpExchange httpExchange) throws IOException {
         String[] pathPart = httpExchange.getRequestURI().getPath().split("/");
         String query = httpExchange.getRequestURI().getQuery();
@@ -298,16 +464,21 @@ public class HttpTaskServer {
         String query = httpExchange.getRequestURI().getQuery();
 
 
-        if (pathParts.length == 2 && pathParts[1].equals("tasks") && query == null) {
+        Map<String, String> params = getQueryParams(httpExchange);
+        boolean isRangeQuery = params.containsKey("from") || params.containsKey("to");
+        if (pathParts.length == 2 && pathParts[1].equals("tasks")
+                && (query == null || requestMethod.equals("GET") && isRangeQuery)) {
             return GET_TASKS;
         }
         if (pathParts.length == 3 && pathParts[1].equals("tasks")) {
             boolean isValidPath = pathParts[2].equals("task")
                     || pathParts[2].equals("epic") || pathParts[2].equals("subtask");
-            if (requestMethod.equals("GET") && (isValidPath || pathParts[2].equals("history"))) {
+            boolean isReadOnlyPath = pathParts[2].equals("history") || pathParts[2].equals("search")
+                    || pathParts[2].equals("slot") || pathParts[2].equals("hot");
+            if (requestMethod.equals("GET") && (isValidPath || isReadOnlyPath)) {
                 return GET_TASKS;
             }
-            if (requestMethod.equals("POST") && isValidPath) {
+            if (requestMethod.equals("POST") && (isValidPath || pathParts[2].equals("schedule"))) {
                 return POST_TASKS;
             }
             if (requestMethod.equals("DELETE") && isValidPath) {
@@ -321,31 +492,151 @@ public class HttpTaskServer {
         return UNKNOWN;
     }
 
+    // Список целиком, задачи с заданным статусом или страница по курсору:
+    // after — id последнего полученного элемента, limit — размер страницы.
+    // Список и страница читаются из снимка и не задерживают изменения на время выборки
+    private void writeList(HttpExchange httpExchange, Map<String, String> params, TaskType type, PageLoader loader)
+            throws IOException {
+        if (params.containsKey("status")) {
+            Optional<TaskStatus> status = Arrays.stream(TaskStatus.values())
+                    .filter(value -> value.name().equals(params.get("status")))
+                    .findFirst();
+            if (status.isEmpty()) {
+                writeResponse(httpExchange, "Некорректный параметр status", 400);
+                return;
+            }
+            writeResponse(httpExchange, gson.toJson(taskManager.getByStatus(type, status.get())), 200);
+            return;
+        }
+        if (!isPageRequest(params)) {
+            TaskManagerSnapshot snapshot = taskManager.snapshot();
+            writeCached(httpExchange, listResponses.get(type), snapshot.getVersion(),
+                    () -> loader.load(snapshot, Integer.MIN_VALUE, Integer.MAX_VALUE));
+            return;
+        }
+        Optional<Integer> after = params.containsKey("after") ? parseInt(params.get("after")) : Optional.of(0);
+        Optional<Integer> limit = params.containsKey("limit")
+                ? parseInt(params.get("limit")) : Optional.of(DEFAULT_PAGE_SIZE);
+        if (after.isEmpty()) {
+            writeResponse(httpExchange, "Некорректный параметр after", 400);
+            return;
+        }
+        if (limit.isEmpty() || limit.get() <= 0) {
+            writeResponse(httpExchange, "Параметр limit должен быть положительным числом", 400);
+            return;
+        }
+        writeResponse(httpExchange, gson.toJson(loader.load(taskManager.snapshot(), after.get(),
+                Math.min(limit.get(), MAX_PAGE_SIZE))), 200);
+    }
+
+    private static boolean isListRequest(Map<String, String> params) {
+        return isPageRequest(params) || params.containsKey("status");
+    }
+
+    private static boolean isPageRequest(Map<String, String> params) {
+        return params.containsKey("after") || params.containsKey("limit");
+    }
+
+    private Map<String, String> getQueryParams(HttpExchange httpExchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = httpExchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, separator), DEFAULT_CHARSET),
+                        URLDecoder.decode(pair.substring(separator + 1), DEFAULT_CHARSET));
+            }
+        }
+        return params;
+    }
+
     private Optional<Integer> getId(HttpExchange httpExchange) {
-        String query = httpExchange.getRequestURI().getQuery();
+        return parseInt(getQueryParams(httpExchange).get("id"));
+    }
+
+    private static Optional<LocalDate> parseDate(String value) {
         try {
-            query = query.substring("id=".length());
-            return Optional.of(Integer.parseInt(query));
-        } catch (NumberFormatException | NullPointerException | StringIndexOutOfBoundsException ex) {
+            return Optional.of(LocalDate.parse(value, DATE_FORMATTER));
+        } catch (DateTimeParseException | NullPointerException ex) {
             return Optional.empty();
         }
     }
 
+    private static Optional<Integer> parseInt(String value) {
+        try {
+            return Optional.of(Integer.parseInt(value));
+        } catch (NumberFormatException ex) {
+            return Optional.empty();
+        }
+    }
+
+    // С заголовком пользователя задача читается из снимка и попадает в историю пользователя,
+    // без него — через менеджер, в общую историю. Популярные задачи учитывают оба вида просмотров
+    private <T extends Task> T view(HttpExchange exchange, int id, BiFunction<TaskManagerSnapshot, Integer, T> lookup,
+                                    IntFunction<T> view) {
+        String userId = getUserId(exchange);
+        if (userId == null) {
+            return view.apply(id);
+        }
+        T task = lookup.apply(taskManager.snapshot(), id);
+        if (task != null) {
+            userHistories.add(userId, id);
+            taskManager.recordView(id);
+        }
+        return task;
+    }
+
+    // История пользователя хранит только id, поэтому удалённые с тех пор задачи отбрасываются при чтении
+    private List<Integer> getUserHistory(String userId) {
+        TaskManagerSnapshot snapshot = taskManager.snapshot();
+        List<Integer> history = new ArrayList<>();
+        for (int id : userHistories.getHistory(userId)) {
+            if (snapshot.getTask(id) != null || snapshot.getEpic(id) != null || snapshot.getSubtask(id) != null) {
+                history.add(id);
+            }
+        }
+        return history;
+    }
+
+    private static String getUserId(HttpExchange exchange) {
+        String userId = exchange.getRequestHeaders().getFirst(USER_HEADER);
+        return userId == null || userId.isBlank() ? null : userId;
+    }
+
     private void writeResponse(HttpExchange exchange, String responseString, int responseCode) throws IOException {
         if (responseString.isBlank()) {
             exchange.sendResponseHeaders(responseCode, 0);
+            exchange.close();
         } else {
-            byte[] bytes = responseString.getBytes(DEFAULT_CHARSET);
-            exchange.sendResponseHeaders(responseCode, bytes.length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(bytes);
-            }
+            writeBytes(exchange, responseString.getBytes(DEFAULT_CHARSET), responseCode);
+        }
+    }
+
+    // Версия берётся до получения данных: изменение во время сериализации не попадёт в кэш под новой версией
+    private void writeCached(HttpExchange exchange, VersionedCache<byte[]> cache, long version,
+                             Supplier<List<? extends Task>> loader) throws IOException {
+        byte[] bytes = cache.get(version, () -> gson.toJson(loader.get()).getBytes(DEFAULT_CHARSET));
+        writeBytes(exchange, bytes, 200);
+    }
+
+    private void writeBytes(HttpExchange exchange, byte[] bytes, int responseCode) throws IOException {
+        exchange.sendResponseHeaders(responseCode, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
         }
         exchange.close();
     }
 
     enum Endpoint {GET_TASKS, POST_TASKS, DELETE_TASKS, UNKNOWN}
 
+    @FunctionalInterface
+    private interface PageLoader {
+        List<? extends Task> load(TaskManagerSnapshot snapshot, int afterId, int limit);
+    }
+
     public static void main(String[] args) throws IOException {
         HttpTaskServer httpTaskServer = new HttpTaskServer();
         httpTaskServer.start();
@@ -0,0 +1,69 @@
+package service;
+
+import model.Task;
+import util.IntLruList;
+import util.IntObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * История на массивах: порядок просмотров и вытеснение ведёт {@link IntLruList} (связи списка — индексы ячеек,
+ * освобождённые ячейки используются повторно), а сами задачи лежат в отображении id → задача без упаковки ключей.
+ * После заполнения истории просмотры не создают объектов, а обход идёт по плотным массивам.
+ * Порядок и вытеснение такие же, как в InMemoryHistoryManager.
+ */
+public class ArrayHistoryManager implements HistoryManager {
+    private final IntLruList ids;
+    private final IntObjectHashMap<Task> tasks = new IntObjectHashMap<>();
+    private long evictedCount;
+
+    public ArrayHistoryManager() {
+        this(Managers.HISTORY_CAPACITY);
+    }
+
+    public ArrayHistoryManager(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Размер истории должен быть положительным");
+        }
+        ids = new IntLruList(capacity);
+    }
+
+    @Override
+    public void add(Task task) {
+        if (task == null) {
+            return;
+        }
+        if (!ids.contains(task.getId()) && ids.size() == ids.getCapacity()) {
+            evictedCount++;
+            tasks.remove(ids.first());
+        }
+        // повторный просмотр переносит задачу в конец
+        ids.add(task.getId());
+        tasks.put(task.getId(), task);
+    }
+
+    @Override
+    public void remove(int id) {
+        if (ids.remove(id)) {
+            tasks.remove(id);
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        List<Task> history = new ArrayList<>(ids.size());
+        ids.forEach(id -> history.add(tasks.get(id)));
+        return history;
+    }
+
+    @Override
+    public int getCapacity() {
+        return ids.getCapacity();
+    }
+
+    @Override
+    public long getEvictedCount() {
+        return evictedCount;
+    }
+}
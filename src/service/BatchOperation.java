@@ -0,0 +1,65 @@
+package service;
+
+import model.Task;
+import model.TaskType;
+
+/**
+ * Операция пакетного изменения для {@link TaskManager#applyBatch}.
+ */
+public class BatchOperation {
+    public enum Kind {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+
+    private final Kind kind;
+    private final Task task;
+    private final TaskType type;
+    private final int id;
+
+    private BatchOperation(Kind kind, Task task, TaskType type, int id) {
+        this.kind = kind;
+        this.task = task;
+        this.type = type;
+        this.id = id;
+    }
+
+    public static BatchOperation create(Task task) {
+        return new BatchOperation(Kind.CREATE, task, task == null ? null : task.getType(), 0);
+    }
+
+    public static BatchOperation update(Task task) {
+        return new BatchOperation(Kind.UPDATE, task, task == null ? null : task.getType(),
+                task == null ? 0 : task.getId());
+    }
+
+    public static BatchOperation delete(TaskType type, int id) {
+        return new BatchOperation(Kind.DELETE, null, type, id);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Task getTask() {
+        return task;
+    }
+
+    public TaskType getType() {
+        return type;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchOperation{" +
+                "kind=" + kind +
+                ", type=" + type +
+                ", id=" + id +
+                '}';
+    }
+}
@@ -0,0 +1,57 @@
+package service;
+
+import model.Task;
+import util.IntHashSet;
+import util.IntObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Результат пакета изменений поверх хранилища менеджера: итоговые версии затронутых задач
+ * и удалённые идентификаторы. Пока пакет проверяется, хранилище не меняется.
+ */
+class BatchPlan {
+    final IntObjectHashMap<Task> changed = new IntObjectHashMap<>();
+    final IntHashSet removed = new IntHashSet();
+    // Созданные задачи и назначенные им идентификаторы: по умолчанию следующие по порядку
+    final List<Task> created = new ArrayList<>();
+    private int[] createdIds = new int[4];
+    // Идентификаторы, заранее назначенные создаваемым задачам, или null
+    private final int[] assignedIds;
+    int lastId;
+
+    BatchPlan(int lastId) {
+        this(lastId, null);
+    }
+
+    BatchPlan(int lastId, int[] assignedIds) {
+        this.lastId = lastId;
+        this.assignedIds = assignedIds;
+    }
+
+    // Идентификатор для очередной создаваемой задачи; вызывается перед добавлением её в created
+    int nextId() {
+        int id = assignedIds == null ? lastId + 1 : assignedIds[created.size()];
+        lastId = Math.max(lastId, id);
+        if (created.size() == createdIds.length) {
+            createdIds = Arrays.copyOf(createdIds, createdIds.length * 2);
+        }
+        createdIds[created.size()] = id;
+        return id;
+    }
+
+    int createdId(int index) {
+        return createdIds[index];
+    }
+
+    void remove(int id) {
+        changed.remove(id);
+        removed.add(id);
+    }
+
+    boolean isTouched(int id) {
+        return changed.containsKey(id) || removed.contains(id);
+    }
+}
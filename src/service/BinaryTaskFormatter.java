@@ -0,0 +1,252 @@
+package service;
+
+import model.*;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Двоичный формат снимка и записей журнала {@link JournaledTasksManager}; CSV остаётся форматом импорта и экспорта.
+ * Снимок: заголовок (метка, версия, последний выданный id, число строк, задач и записей истории),
+ * таблица строк, записи задач фиксированной длины RECORD_SIZE и id истории. Одинаковые имена и описания
+ * хранятся в таблице один раз, запись ссылается на них по номеру. Даты хранятся днями от эпохи,
+ * длительность и окончание эпика — минутами, тип и статус — номерами значений перечислений.
+ * Снимок читается через MappedByteBuffer, без построчного разбора.
+ */
+public class BinaryTaskFormatter {
+    private BinaryTaskFormatter() {
+    }
+
+    static final int SNAPSHOT_MAGIC = 0x4B424E53;
+    static final int LOG_MAGIC = 0x4B424E4C;
+    static final int VERSION = 1;
+    // Версия 2: перед каждой записью журнала хранится её длина
+    static final int LOG_VERSION = 2;
+    // Метка и версия в начале журнала
+    static final int LOG_HEADER_SIZE = 2 * Integer.BYTES;
+    //0-id,4-type,5-status,6-резерв,8-name,12-description,16-epic,20-startTime,24-duration,32-endTime эпика
+    static final int RECORD_SIZE = 40;
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+    static void writeSnapshot(DataOutput out, TaskManagerSnapshot snapshot, List<Task> history, int lastId)
+            throws IOException {
+        List<Task> all = new ArrayList<>(snapshot.getTasks());
+        all.addAll(snapshot.getEpics());
+        all.addAll(snapshot.getSubtasks());
+        Map<String, Integer> stringIndex = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (Task task : all) {
+            intern(task.getName(), stringIndex, strings);
+            intern(task.getDescription(), stringIndex, strings);
+        }
+
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(lastId);
+        out.writeInt(strings.size());
+        out.writeInt(all.size());
+        out.writeInt(history.size());
+        for (String string : strings) {
+            writeString(out, string);
+        }
+        for (Task task : all) {
+            writeRecord(out, task, stringIndex.get(task.getName()), stringIndex.get(task.getDescription()));
+        }
+        for (Task task : history) {
+            out.writeInt(task.getId());
+        }
+    }
+
+    static Snapshot readSnapshot(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            checkHeader(buffer, SNAPSHOT_MAGIC, VERSION, path);
+            int lastId = buffer.getInt();
+            int stringCount = buffer.getInt();
+            int taskCount = buffer.getInt();
+            int historyCount = buffer.getInt();
+            // числа из заголовка проверяются до выделения массивов: каждая строка занимает хотя бы 4 байта длины
+            if (stringCount < 0 || taskCount < 0 || historyCount < 0
+                    || (long) stringCount * Integer.BYTES + (long) taskCount * RECORD_SIZE
+                    + (long) historyCount * Integer.BYTES > buffer.remaining()) {
+                throw new ManagerSaveException("Повреждён снимок " + path);
+            }
+            String[] strings = new String[stringCount];
+            int[] history = new int[historyCount];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(buffer);
+            }
+            if (buffer.remaining() != (long) taskCount * RECORD_SIZE + (long) historyCount * Integer.BYTES) {
+                throw new ManagerSaveException("Повреждён снимок " + path);
+            }
+            List<Task> tasks = new ArrayList<>(taskCount);
+            for (int i = 0; i < taskCount; i++) {
+                tasks.add(readRecord(buffer, strings));
+            }
+            buffer.asIntBuffer().get(history);
+            return new Snapshot(tasks, history, lastId);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new ManagerSaveException("Повреждён снимок " + path);
+        }
+    }
+
+    static void writeLogHeader(DataOutput out) throws IOException {
+        out.writeInt(LOG_MAGIC);
+        out.writeInt(LOG_VERSION);
+    }
+
+    // Проверяет метку и версию и оставляет буфер сразу за ними
+    static void checkHeader(ByteBuffer buffer, int magic, int expectedVersion, Path path) {
+        if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != magic) {
+            throw new ManagerSaveException("Неизвестный формат файла " + path);
+        }
+        int version = buffer.getInt();
+        if (version != expectedVersion) {
+            throw new ManagerSaveException("Неподдерживаемая версия " + version + " файла " + path);
+        }
+    }
+
+    // Запись журнала самодостаточна: имя и описание идут перед записью задачи, она ссылается на них как на 0 и 1
+    static void writeTask(DataOutput out, Task task) throws IOException {
+        writeString(out, task.getName());
+        writeString(out, task.getDescription());
+        writeRecord(out, task, 0, 1);
+    }
+
+    static Task readTask(ByteBuffer buffer) {
+        String[] strings = {readString(buffer), readString(buffer)};
+        return readRecord(buffer, strings);
+    }
+
+    private static void writeRecord(DataOutput out, Task task, int name, int description) throws IOException {
+        out.writeInt(task.getId());
+        out.writeByte(task.getType().ordinal());
+        out.writeByte(task.getTaskStatus().ordinal());
+        out.writeShort(0);
+        out.writeInt(name);
+        out.writeInt(description);
+        out.writeInt(task.getType() == TaskType.SUBTASK ? ((Subtask) task).getEpicId() : 0);
+        out.writeInt((int) task.getStartTime().toEpochDay());
+        out.writeLong(task.getDuration().toMinutes());
+        out.writeLong(task.getType() == TaskType.EPIC ? task.getEndTime().toEpochSecond(ZoneOffset.UTC) / 60 : 0);
+    }
+
+    // Значения, которые не могли быть записаны writeRecord, отвергаются IllegalArgumentException
+    private static Task readRecord(ByteBuffer buffer, String[] strings) {
+        int id = buffer.getInt();
+        TaskType type = TYPES[readIndex(buffer.get(), TYPES.length)];
+        TaskStatus status = STATUSES[readIndex(buffer.get(), STATUSES.length)];
+        buffer.getShort();
+        String name = strings[readIndex(buffer.getInt(), strings.length)];
+        String description = strings[readIndex(buffer.getInt(), strings.length)];
+        int epicId = buffer.getInt();
+        LocalDate startTime = LocalDate.ofEpochDay(buffer.getInt());
+        long minutes = buffer.getLong();
+        long endTime = buffer.getLong();
+        final Duration duration;
+        final LocalDateTime epicEndTime;
+        try {
+            duration = Duration.ofMinutes(minutes);
+            epicEndTime = LocalDateTime.ofEpochSecond(Math.multiplyExact(endTime, 60), 0, ZoneOffset.UTC);
+        } catch (ArithmeticException | DateTimeException e) {
+            throw new IllegalArgumentException("Недопустимое время записи " + id, e);
+        }
+        final Task task;
+        switch (type) {
+            case EPIC:
+                Epic epic = new Epic(name, description);
+                epic.setTaskStatus(status);
+                epic.setStartTime(startTime);
+                epic.setDuration(duration);
+                epic.setEndTime(epicEndTime);
+                task = epic;
+                break;
+            case SUBTASK:
+                task = new Subtask(name, description, status, epicId, startTime, duration);
+                break;
+            default:
+                task = new Task(name, description, status, startTime, duration);
+        }
+        task.setId(id);
+        return task;
+    }
+
+    private static int readIndex(int index, int length) {
+        if (index < 0 || index >= length) {
+            throw new IllegalArgumentException("Недопустимый номер " + index);
+        }
+        return index;
+    }
+
+    private static void intern(String string, Map<String, Integer> stringIndex, List<String> strings) {
+        if (!stringIndex.containsKey(string)) {
+            stringIndex.put(string, strings.size());
+            strings.add(string);
+        }
+    }
+
+    // Длина в байтах UTF-8 и сами байты; -1 — null
+    private static void writeString(DataOutput out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Недопустимая длина строки " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static class Snapshot {
+        private final List<Task> tasks;
+        private final int[] history;
+        private final int lastId;
+
+        private Snapshot(List<Task> tasks, int[] history, int lastId) {
+            this.tasks = tasks;
+            this.history = history;
+            this.lastId = lastId;
+        }
+
+        List<Task> getTasks() {
+            return tasks;
+        }
+
+        int[] getHistory() {
+            return history;
+        }
+
+        int getLastId() {
+            return lastId;
+        }
+    }
+}
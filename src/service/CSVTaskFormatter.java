@@ -68,7 +68,10 @@ public class CSVTaskFormatter {
     }
 
     static String historyToString(HistoryManager manager) {
-        List<Task> history = manager.getHistory();
+        return historyToString(manager.getHistory());
+    }
+
+    static String historyToString(List<Task> history) {
         StringBuilder stringBuilder = new StringBuilder();
         for (Task task : history) {
             stringBuilder.append(task.getId() + ",");
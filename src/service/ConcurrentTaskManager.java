@@ -0,0 +1,294 @@
+package service;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+import model.TaskType;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Потокобезопасный менеджер: чтения выполняются параллельно под общей блокировкой,
+ * изменения (вместе с проверкой пересечений и пересчётом эпиков) — под эксклюзивной.
+ * История просмотров синхронизирована отдельно, поэтому получение по id не блокирует другие чтения.
+ */
+public class ConcurrentTaskManager extends InMemoryTaskManager {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ConcurrentTaskManager() {
+        super(new SynchronizedHistoryManager(Managers.getDefaultHistory()));
+    }
+
+    // Методы получения списка всех задач
+    @Override
+    public ArrayList<Task> getListOfAllTasks() {
+        return read(super::getListOfAllTasks);
+    }
+
+    @Override
+    public ArrayList<Epic> getListOfAllEpics() {
+        return read(super::getListOfAllEpics);
+    }
+
+    @Override
+    public ArrayList<Subtask> getListOfAllSubtasks() {
+        return read(super::getListOfAllSubtasks);
+    }
+
+    // Удаление всех задач
+    @Override
+    public void deleteAllTasks() {
+        write(super::deleteAllTasks);
+    }
+
+    @Override
+    public void deleteAllEpics() {
+        write(super::deleteAllEpics);
+    }
+
+    @Override
+    public void deleteAllSubtasks() {
+        write(super::deleteAllSubtasks);
+    }
+
+    // Получение по ID
+    @Override
+    public Task getTaskById(int id) {
+        return read(() -> super.getTaskById(id));
+    }
+
+    @Override
+    public Epic getEpicById(int id) {
+        return read(() -> super.getEpicById(id));
+    }
+
+    @Override
+    public Subtask getSubtaskById(int id) {
+        return read(() -> super.getSubtaskById(id));
+    }
+
+    // Создание
+    @Override
+    public void createTask(Task task) {
+        write(() -> super.createTask(task));
+    }
+
+    @Override
+    public void createEpic(Epic epic) {
+        write(() -> super.createEpic(epic));
+    }
+
+    @Override
+    public void createSubtask(Subtask subtask) {
+        write(() -> super.createSubtask(subtask));
+    }
+
+    // Обновление
+    @Override
+    public void updateTask(Task task) {
+        write(() -> super.updateTask(task));
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        write(() -> super.updateEpic(epic));
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        write(() -> super.updateSubtask(subtask));
+    }
+
+    // Получение списка всех подзадач определенного эпика
+    @Override
+    public ArrayList<Subtask> getListOfAllEpicSubtasks(Epic epic) {
+        return read(() -> super.getListOfAllEpicSubtasks(epic));
+    }
+
+    // Удаление по идентификатору
+    @Override
+    public void deleteTaskById(int id) {
+        write(() -> super.deleteTaskById(id));
+    }
+
+    @Override
+    public void deleteEpicById(int id) {
+        write(() -> super.deleteEpicById(id));
+    }
+
+    @Override
+    public void deleteSubtaskById(int id) {
+        write(() -> super.deleteSubtaskById(id));
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return read(super::getHistory);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return read(super::getPrioritizedTasks);
+    }
+
+    // Представления только для чтения
+    @Override
+    public List<Task> getTasksView() {
+        return read(super::getTasksView);
+    }
+
+    @Override
+    public List<Epic> getEpicsView() {
+        return read(super::getEpicsView);
+    }
+
+    @Override
+    public List<Subtask> getSubtasksView() {
+        return read(super::getSubtasksView);
+    }
+
+    @Override
+    public List<Subtask> getEpicSubtasksView(int epicId) {
+        return read(() -> super.getEpicSubtasksView(epicId));
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasksView() {
+        return read(super::getPrioritizedTasksView);
+    }
+
+    @Override
+    public Task getTaskView(int id) {
+        return read(() -> super.getTaskView(id));
+    }
+
+    @Override
+    public Epic getEpicView(int id) {
+        return read(() -> super.getEpicView(id));
+    }
+
+    @Override
+    public Subtask getSubtaskView(int id) {
+        return read(() -> super.getSubtaskView(id));
+    }
+
+    // Постраничное получение
+    @Override
+    public List<Task> getTasksPage(int afterId, int limit) {
+        return read(() -> super.getTasksPage(afterId, limit));
+    }
+
+    @Override
+    public List<Epic> getEpicsPage(int afterId, int limit) {
+        return read(() -> super.getEpicsPage(afterId, limit));
+    }
+
+    @Override
+    public List<Subtask> getSubtasksPage(int afterId, int limit) {
+        return read(() -> super.getSubtasksPage(afterId, limit));
+    }
+
+    // Выборка по статусу
+    @Override
+    public List<Task> getByStatus(TaskType type, TaskStatus status) {
+        return read(() -> super.getByStatus(type, status));
+    }
+
+    @Override
+    public int countByStatus(TaskType type, TaskStatus status) {
+        return read(() -> super.countByStatus(type, status));
+    }
+
+    @Override
+    public List<Task> getHotTasks(int limit) {
+        return read(() -> super.getHotTasks(limit));
+    }
+
+    // Как и просмотры по id, выполняется под общей блокировкой: счётчики просмотров синхронизированы сами
+    @Override
+    public void recordView(int id) {
+        read(() -> {
+            super.recordView(id);
+            return null;
+        });
+    }
+
+    @Override
+    public List<Task> search(String query, int limit) {
+        return read(() -> super.search(query, limit));
+    }
+
+    // Выборка по времени
+    @Override
+    public List<Task> getTasksBetween(LocalDate from, LocalDate to) {
+        return read(() -> super.getTasksBetween(from, to));
+    }
+
+    @Override
+    public List<Task> getTasksOverlapping(LocalDate from, LocalDate to) {
+        return read(() -> super.getTasksOverlapping(from, to));
+    }
+
+    @Override
+    public LocalDate findEarliestSlot(Duration duration, LocalDate notBefore) {
+        return read(() -> super.findEarliestSlot(duration, notBefore));
+    }
+
+    // Пакетные изменения
+    @Override
+    public void createAll(List<? extends Task> tasks) {
+        write(() -> super.createAll(tasks));
+    }
+
+    @Override
+    public void applyBatch(List<BatchOperation> operations) {
+        write(() -> super.applyBatch(operations));
+    }
+
+    // Снимок берётся под общей блокировкой: писатели ждут только публикации изменённых эпиков,
+    // а чтение снимка после этого блокировок не требует
+    @Override
+    public TaskManagerSnapshot snapshot() {
+        return read(this::publishSnapshot);
+    }
+
+    private synchronized TaskManagerSnapshot publishSnapshot() {
+        return super.snapshot();
+    }
+
+    @Override
+    public long getVersion() {
+        return read(super::getVersion);
+    }
+
+    // Представления эпиков создаются лениво, в том числе параллельными читателями
+    @Override
+    protected synchronized Epic epicView(int id) {
+        return super.epicView(id);
+    }
+
+    private <R> R read(Supplier<R> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package service;
+
+import java.time.Duration;
+
+/**
+ * Когда журнал {@link JournaledTasksManager} принудительно сбрасывается на диск.
+ * Операции в любом случае завершаются в памяти и не ждут записи.
+ */
+public class Durability {
+    public enum Kind {
+        // после каждой операции; операции, накопившиеся за время сброса, записываются следующим сбросом вместе
+        EVERY_OPERATION,
+        // не чаще одного раза за интервал
+        INTERVAL,
+        // записи передаются ОС без FileChannel.force
+        OS_MANAGED
+    }
+
+    private final Kind kind;
+    private final Duration interval;
+
+    private Durability(Kind kind, Duration interval) {
+        this.kind = kind;
+        this.interval = interval;
+    }
+
+    public static Durability everyOperation() {
+        return new Durability(Kind.EVERY_OPERATION, Duration.ZERO);
+    }
+
+    public static Durability every(Duration interval) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("Интервал должен быть положительным");
+        }
+        return new Durability(Kind.INTERVAL, interval);
+    }
+
+    public static Durability osManaged() {
+        return new Durability(Kind.OS_MANAGED, Duration.ZERO);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    @Override
+    public String toString() {
+        return "Durability{" +
+                "kind=" + kind +
+                ", interval=" + interval +
+                '}';
+    }
+}
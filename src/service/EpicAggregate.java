@@ -0,0 +1,63 @@
+package service;
+
+import model.Subtask;
+import model.TaskStatus;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.TreeMap;
+
+/**
+ * Накопленные показатели подзадач одного эпика: количество по статусам, суммарная длительность,
+ * самое раннее начало и самое позднее окончание. Добавление и удаление подзадачи — O(log n).
+ */
+class EpicAggregate {
+    private final int[] statusCounts = new int[TaskStatus.values().length];
+    private int size;
+    private Duration duration = Duration.ZERO;
+    private final TreeMap<LocalDate, Integer> startTimes = new TreeMap<>();
+    private final TreeMap<LocalDateTime, Integer> endTimes = new TreeMap<>();
+
+    void add(Subtask subtask) {
+        statusCounts[subtask.getTaskStatus().ordinal()]++;
+        size++;
+        duration = duration.plus(subtask.getDuration());
+        startTimes.merge(subtask.getStartTime(), 1, Integer::sum);
+        endTimes.merge(subtask.getEndTime(), 1, Integer::sum);
+    }
+
+    void remove(Subtask subtask) {
+        statusCounts[subtask.getTaskStatus().ordinal()]--;
+        size--;
+        duration = duration.minus(subtask.getDuration());
+        startTimes.computeIfPresent(subtask.getStartTime(), (time, count) -> count == 1 ? null : count - 1);
+        endTimes.computeIfPresent(subtask.getEndTime(), (time, count) -> count == 1 ? null : count - 1);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    TaskStatus getStatus() {
+        if (size == 0 || statusCounts[TaskStatus.NEW.ordinal()] == size) {
+            return TaskStatus.NEW;
+        }
+        if (statusCounts[TaskStatus.DONE.ordinal()] == size) {
+            return TaskStatus.DONE;
+        }
+        return TaskStatus.IN_PROGRESS;
+    }
+
+    LocalDate getStartTime() {
+        return startTimes.firstKey();
+    }
+
+    Duration getDuration() {
+        return duration;
+    }
+
+    LocalDateTime getEndTime() {
+        return endTimes.lastKey();
+    }
+}
@@ -11,7 +11,6 @@ import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
 
 public class FileBackedTasksManager extends InMemoryTaskManager {
@@ -29,10 +28,24 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
     }
 
     protected void save() {
+        String content = toCsv(snapshot(), historyManager.getHistory());
+        try (Writer fileWriter = new FileWriter(path.toFile(), StandardCharsets.UTF_8);
+             BufferedWriter bw = new BufferedWriter(fileWriter)) {
+
+            bw.write(content);
+
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи");
+        }
+
+    }
+
+    // Содержимое файла: задачи по возрастанию id, пустая строка и история просмотров
+    protected static String toCsv(TaskManagerSnapshot snapshot, List<Task> history) {
         StringBuilder stringBuilder = new StringBuilder();
-        List<Task> summaryListOfTasks = new ArrayList<>(getListOfAllTasks());
-        summaryListOfTasks.addAll(getListOfAllEpics());
-        summaryListOfTasks.addAll(getListOfAllSubtasks());
+        List<Task> summaryListOfTasks = new ArrayList<>(snapshot.getTasks());
+        summaryListOfTasks.addAll(snapshot.getEpics());
+        summaryListOfTasks.addAll(snapshot.getSubtasks());
         summaryListOfTasks.sort(Comparator.comparingInt(Task::getId));
         if (!summaryListOfTasks.isEmpty()) {
             stringBuilder.append(TASK_FIELDS + "\n");
@@ -40,92 +53,93 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
         for (Task task : summaryListOfTasks) {
             stringBuilder.append(CSVTaskFormatter.toString(task) + "\n");
         }
-        stringBuilder.append("\n" + CSVTaskFormatter.historyToString(historyManager));
-
-        try (Writer fileWriter = new FileWriter(path.getFileName().toString(), StandardCharsets.UTF_8);
-             BufferedWriter bw = new BufferedWriter(fileWriter)) {
-
-            bw.write(stringBuilder.toString());
-
-        } catch (IOException e) {
-            throw new ManagerSaveException("Ошибка записи");
-        }
+        stringBuilder.append("\n" + CSVTaskFormatter.historyToString(history));
+        return stringBuilder.toString();
+    }
 
+    // Из сохранённой истории восстанавливаются только последние просмотры, которые в неё помещаются:
+    // более ранние всё равно были бы вытеснены
+    protected List<Integer> lastViewed(List<Integer> history) {
+        int capacity = historyManager.getCapacity();
+        return history.size() > capacity ? history.subList(history.size() - capacity, history.size()) : history;
     }
 
+    // Файл читается потоком: строки задач до пустой строки (заголовок пропускается), после неё — история
     public static FileBackedTasksManager loadFromFile(Path path) {
+        FileBackedTasksManager fileManager = new FileBackedTasksManager(path);
         if (!Files.exists(path)) {
-            return new FileBackedTasksManager(path);
+            return fileManager;
         }
-        FileBackedTasksManager fileManager = new FileBackedTasksManager(path);
-        LinkedList<String> dataList = new LinkedList<>();
-
-        try (Reader fileReader = new FileReader(path.getFileName().toString(), StandardCharsets.UTF_8);
+        List<Integer> history = List.of();
+        int lastId = 0;
+        try (Reader fileReader = new FileReader(path.toFile(), StandardCharsets.UTF_8);
              BufferedReader br = new BufferedReader(fileReader)) {
-            while (br.ready()) {
-                String line = br.readLine();
-                dataList.addLast(line);
-            }
-        } catch (IOException e) {
-            throw new ManagerSaveException("Ошибка чтения файла");
-        }
-        if (!dataList.isEmpty() && dataList.size() > 3) {
-            String parseInt = dataList.get(dataList.size() - 3).split(",", 2)[0];
-            int rememberId;
-            if (Character.isDigit(parseInt.charAt(0))) {
-                rememberId = Integer.parseInt(parseInt);
-            } else {
-                return fileManager;
-            }
-
-            dataList.removeFirst();
-            fileManager.id = rememberId;
-
-            for (String data : dataList) {
-                if (data.isEmpty()) {
-                    break;
-                }
-                Task task = CSVTaskFormatter.fromString(data);
-                if (task.getType() == TaskType.EPIC) {
-                    fileManager.loadEpic((Epic) task);
-                } else if (task.getType() == TaskType.SUBTASK) {
-                    fileManager.loadSubtask((Subtask) task);
-                } else {
-                    fileManager.loadTask(task);
+            String line;
+            while ((line = br.readLine()) != null && !line.isEmpty()) {
+                if (Character.isDigit(line.charAt(0))) {
+                    Task task = CSVTaskFormatter.fromString(line);
+                    fileManager.load(task);
+                    lastId = Math.max(lastId, task.getId());
                 }
             }
-            String history = dataList.getLast();
-            if (!history.isEmpty()) {
-                List<Integer> historyList = CSVTaskFormatter.historyFromString(history);
-                for (Integer id : historyList) {
-                    if (fileManager.epics.containsKey(id)) {
-                        fileManager.getEpicById(id);
-                    } else if (fileManager.subtasks.containsKey(id)) {
-                        fileManager.getSubtaskById(id);
-                    } else if (fileManager.tasks.containsKey(id)) {
-                        fileManager.getTaskById(id);
-                    }
-                }
+            line = br.readLine();
+            if (line != null) {
+                history = CSVTaskFormatter.historyFromString(line);
             }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка чтения файла");
         }
+        fileManager.finishLoading(history, lastId);
         return fileManager;
     }
 
-    private void loadTask(Task task) {
-        validateCorrectTaskTime(task);
-        tasks.put(task.getId(), task);
-        prioritizedTasks.add(new Task(task));
-
+    // Загруженная задача только сохраняется: связи с эпиками и индексы по времени строятся в finishLoading
+    protected void load(Task task) {
+        if (task.getType() == TaskType.EPIC) {
+            storeEpic((Epic) task);
+        } else if (task.getType() == TaskType.SUBTASK) {
+            storeSubtask(((Subtask) task).asReadOnly());
+        } else {
+            storeTask(task.asReadOnly());
+        }
     }
 
-    private void loadEpic(Epic epic) {
-        epics.put(epic.getId(), epic);
+    // Задачи загружены: подзадачи привязываются к эпикам, индексы строятся разом, история восстанавливается
+    protected void finishLoading(List<Integer> history, int lastId) {
+        List<Task> prioritized = new ArrayList<>(tasks.size() + subtasks.size());
+        taskIds.forEach(taskId -> prioritized.add(tasks.get(taskId)));
+        subtaskIds.forEach(subtaskId -> {
+            Subtask subtask = subtasks.get(subtaskId);
+            prioritized.add(subtask);
+            Epic epic = epics.get(subtask.getEpicId());
+            if (epic != null && !epic.hasSubtask(subtaskId)) {
+                epic.addSubtask(subtaskId);
+            }
+        });
+        addAllPrioritized(prioritized);
+        epicIds.forEach(epicId -> {
+            Epic epic = epics.get(epicId);
+            rebuildEpicAggregate(epic);
+            refreshEpic(epic);
+        });
+        restoreHistory(history);
+        id = lastId;
     }
 
-    private void loadSubtask(Subtask subtask) {
-        validateCorrectTaskTime(subtask);
-        subtasks.put(subtask.getId(), subtask);
-        prioritizedTasks.add(new Subtask(subtask));
+    // История восстанавливается напрямую в HistoryManager: get*ById сохраняли бы файл на каждый просмотр
+    protected void restoreHistory(List<Integer> history) {
+        for (Integer viewedId : lastViewed(history)) {
+            Task task = tasks.get(viewedId);
+            if (task == null) {
+                task = subtasks.get(viewedId);
+            }
+            if (task == null) {
+                task = epicView(viewedId);
+            }
+            if (task != null) {
+                historyManager.add(task);
+            }
+        }
     }
 
     @Override
@@ -200,28 +214,41 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
         save();
     }
 
+    // createAll выполняется через applyBatch, поэтому пакет сохраняется один раз
     @Override
-    public Task getTaskById(int id) {
-        final Task task = super.getTaskById(id);
+    public void applyBatch(List<BatchOperation> operations) {
+        super.applyBatch(operations);
         save();
+    }
+
+    // get*ById работают через представления, поэтому история сохраняется здесь
+    @Override
+    public Task getTaskView(int id) {
+        final Task task = super.getTaskView(id);
+        saveView(task);
         return task;
 
     }
 
     @Override
-    public Epic getEpicById(int id) {
-        final Epic epic = super.getEpicById(id);
-        save();
+    public Epic getEpicView(int id) {
+        final Epic epic = super.getEpicView(id);
+        saveView(epic);
         return epic;
     }
 
     @Override
-    public Subtask getSubtaskById(int id) {
-        final Subtask subtask = super.getSubtaskById(id);
-        save();
+    public Subtask getSubtaskView(int id) {
+        final Subtask subtask = super.getSubtaskView(id);
+        saveView(subtask);
         return subtask;
     }
 
+    // Просмотр меняет только историю; viewed равен null, если задачи нет
+    protected void saveView(Task viewed) {
+        save();
+    }
+
     public static void main(String[] args) {
         Path path = Paths.get("backup.csv");
         TaskManager manager = FileBackedTasksManager.loadFromFile(path);
@@ -0,0 +1,42 @@
+package service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Истории пользователей в файлах каталога: один файл на пользователя со списком id через запятую
+public class FileHistoryStorage implements HistoryStorage {
+    private final Path directory;
+
+    public FileHistoryStorage(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public void save(String userId, int[] taskIds) {
+        try {
+            Files.createDirectories(directory);
+            Files.writeString(fileOf(userId), UserHistoryStore.idsToString(taskIds), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи истории пользователя");
+        }
+    }
+
+    @Override
+    public int[] load(String userId) {
+        Path file = fileOf(userId);
+        if (!Files.exists(file)) {
+            return new int[0];
+        }
+        try {
+            return UserHistoryStore.idsFromString(Files.readString(file, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка чтения истории пользователя");
+        }
+    }
+
+    private Path fileOf(String userId) {
+        return directory.resolve(UserHistoryStore.encodeUserId(userId) + ".history");
+    }
+}
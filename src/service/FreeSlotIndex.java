@@ -0,0 +1,159 @@
+package service;
+
+import java.util.SplittableRandom;
+
+/**
+ * Свободные промежутки между задачами: начало промежутка (первая полночь после окончания задачи, в минутах
+ * от эпохи) -> начало следующей задачи. Хранится в декартовом дереве, где каждый узел знает наибольшую
+ * вместимость в своём поддереве, поэтому первый подходящий по длине промежуток находится за O(log n).
+ */
+class FreeSlotIndex {
+    static final long OPEN = Long.MIN_VALUE;
+    static final long UNBOUNDED = Long.MAX_VALUE;
+
+    private final SplittableRandom random = new SplittableRandom(0);
+    private Node root;
+
+    private static class Node {
+        final long start;
+        final int priority;
+        long end;
+        long maxCapacity;
+        Node left;
+        Node right;
+
+        Node(long start, long end, int priority) {
+            this.start = start;
+            this.end = end;
+            this.priority = priority;
+            this.maxCapacity = capacity();
+        }
+
+        long capacity() {
+            if (start == OPEN || end == UNBOUNDED) {
+                return UNBOUNDED;
+            }
+            return end - start;
+        }
+    }
+
+    void put(long start, long end) {
+        root = insert(root, start, end);
+    }
+
+    void remove(long start) {
+        root = delete(root, start);
+    }
+
+    // Конец промежутка с наибольшим началом не позже minute; OPEN — такого промежутка нет
+    long floorEnd(long minute) {
+        Node node = root;
+        long end = OPEN;
+        while (node != null) {
+            if (node.start <= minute) {
+                end = node.end;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return end;
+    }
+
+    // Начало первого промежутка, начинающегося позже after, в который помещается задача длиной duration
+    // (конец задачи должен быть строго раньше начала следующей); OPEN — такого нет
+    long firstFit(long after, long duration) {
+        Node node = firstFit(root, after, duration);
+        return node == null ? OPEN : node.start;
+    }
+
+    private static Node firstFit(Node node, long after, long duration) {
+        if (node == null || node.maxCapacity <= duration) {
+            return null;
+        }
+        if (node.start <= after) {
+            return firstFit(node.right, after, duration);
+        }
+        Node left = firstFit(node.left, after, duration);
+        if (left != null) {
+            return left;
+        }
+        if (node.capacity() > duration) {
+            return node;
+        }
+        return firstFit(node.right, after, duration);
+    }
+
+    private Node insert(Node node, long start, long end) {
+        if (node == null) {
+            return new Node(start, end, random.nextInt());
+        }
+        if (start == node.start) {
+            node.end = end;
+        } else if (start < node.start) {
+            node.left = insert(node.left, start, end);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, start, end);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private static Node delete(Node node, long start) {
+        if (node == null) {
+            return null;
+        }
+        if (start < node.start) {
+            node.left = delete(node.left, start);
+        } else if (start > node.start) {
+            node.right = delete(node.right, start);
+        } else if (node.left == null) {
+            return node.right;
+        } else if (node.right == null) {
+            return node.left;
+        } else if (node.left.priority > node.right.priority) {
+            node = rotateRight(node);
+            node.right = delete(node.right, start);
+        } else {
+            node = rotateLeft(node);
+            node.left = delete(node.left, start);
+        }
+        update(node);
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private static void update(Node node) {
+        long maxCapacity = node.capacity();
+        if (node.left != null) {
+            maxCapacity = Math.max(maxCapacity, node.left.maxCapacity);
+        }
+        if (node.right != null) {
+            maxCapacity = Math.max(maxCapacity, node.right.maxCapacity);
+        }
+        node.maxCapacity = maxCapacity;
+    }
+}
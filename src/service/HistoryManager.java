@@ -10,4 +10,10 @@ public interface HistoryManager {
     void remove(int id);
 
     List<Task> getHistory();
+
+    // Наибольшее число задач в истории
+    int getCapacity();
+
+    // Сколько задач вытеснено из истории из-за переполнения
+    long getEvictedCount();
 }
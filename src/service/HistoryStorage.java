@@ -0,0 +1,10 @@
+package service;
+
+// Хранилище историй пользователей, вытесненных из памяти
+public interface HistoryStorage {
+    // Идентификаторы задач от самого старого просмотра к последнему
+    void save(String userId, int[] taskIds);
+
+    // Пустой массив, если история пользователя не сохранялась
+    int[] load(String userId);
+}
@@ -9,8 +9,8 @@ import model.Subtask;
 import model.Task;
 
 import java.net.URI;
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -33,39 +33,51 @@ public class HttpTaskManager extends FileBackedTasksManager {
 
     @Override
     protected void save() {
-        client.put("tasks", gson.toJson(tasks));
-        client.put("epics", gson.toJson(epics));
-        client.put("subtasks", gson.toJson(subtasks));
+        TaskManagerSnapshot snapshot = snapshot();
+        client.put("tasks", gson.toJson(byId(snapshot.getTasks())));
+        client.put("epics", gson.toJson(byId(snapshot.getEpics())));
+        client.put("subtasks", gson.toJson(byId(snapshot.getSubtasks())));
         client.put("history", gson.toJson(getHistory().stream()
                 .map(Task::getId).collect(Collectors.toList())));
-        client.put("prioritizedTasks", gson.toJson(getPrioritizedTasks()));
+        client.put("prioritizedTasks", gson.toJson(getPrioritizedTasksView()));
+    }
+
+    // Формат хранения прежний: объект id -> задача
+    private static <T extends Task> LinkedHashMap<Integer, T> byId(List<T> tasks) {
+        LinkedHashMap<Integer, T> result = new LinkedHashMap<>();
+        for (T task : tasks) {
+            result.put(task.getId(), task);
+        }
+        return result;
     }
 
     private void load() {
         try {
-            tasks.putAll(gson.fromJson(client.load("tasks"), new TypeToken<HashMap<Integer, Task>>() {
-            }.getType()));
-            epics.putAll(gson.fromJson(client.load("epics"), new TypeToken<HashMap<Integer, Epic>>() {
-            }.getType()));
-            subtasks.putAll(gson.fromJson(client.load("subtasks"), new TypeToken<HashMap<Integer, Subtask>>() {
-            }.getType()));
-            tasks.values().stream().map(Task::new).forEach((task) -> prioritizedTasks.add(task));
-            subtasks.values().stream().map(Subtask::new).forEach((subtask) -> prioritizedTasks.add(subtask));
+            HashMap<Integer, Task> loadedTasks = gson.fromJson(client.load("tasks"),
+                    new TypeToken<HashMap<Integer, Task>>() {
+                    }.getType());
+            HashMap<Integer, Epic> loadedEpics = gson.fromJson(client.load("epics"),
+                    new TypeToken<HashMap<Integer, Epic>>() {
+                    }.getType());
+            HashMap<Integer, Subtask> loadedSubtasks = gson.fromJson(client.load("subtasks"),
+                    new TypeToken<HashMap<Integer, Subtask>>() {
+                    }.getType());
+            int lastId = 0;
+            for (Task task : loadedTasks.values()) {
+                load(task);
+                lastId = Math.max(lastId, task.getId());
+            }
+            for (Epic epic : loadedEpics.values()) {
+                load(epic);
+                lastId = Math.max(lastId, epic.getId());
+            }
+            for (Subtask subtask : loadedSubtasks.values()) {
+                load(subtask);
+                lastId = Math.max(lastId, subtask.getId());
+            }
             List<Integer> history = gson.fromJson(client.load("history"), new TypeToken<List<Integer>>() {
             }.getType());
-            history.forEach((Integer id) -> {
-                if (epics.containsKey(id)) {
-                    getEpicById(id);
-                } else if (subtasks.containsKey(id)) {
-                    getSubtaskById(id);
-                } else if (tasks.containsKey(id)) {
-                    getTaskById(id);
-                }
-            });
-            List<Integer> allIdTasks = new ArrayList<>(tasks.keySet());
-            allIdTasks.addAll(epics.keySet());
-            allIdTasks.addAll(subtasks.keySet());
-            id = allIdTasks.stream().max(Integer::compareTo).orElse(0);
+            finishLoading(history, lastId);
         } catch (Exception ex) {
             ex.printStackTrace();
         }
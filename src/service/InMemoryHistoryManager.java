@@ -1,25 +1,40 @@
 package service;
 
 import model.Task;
+import util.IntObjectHashMap;
 
-import java.util.Map;
-import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
 
+// История ограничена: при переполнении вытесняется задача, которую дольше всех не просматривали
 public class InMemoryHistoryManager implements HistoryManager {
 
     private Node<Task> head;
     private Node<Task> tail;
-    private final Map<Integer, Node<Task>> idToNodeTask = new HashMap<>();
+    private final IntObjectHashMap<Node<Task>> idToNodeTask = new IntObjectHashMap<>();
+    private final int capacity;
+    private long evictedCount;
+
+    public InMemoryHistoryManager() {
+        this(Managers.HISTORY_CAPACITY);
+    }
+
+    public InMemoryHistoryManager(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Размер истории должен быть положительным");
+        }
+        this.capacity = capacity;
+    }
 
     @Override
     public void add(Task task) {
         if (task == null) {
             return;
         }
-        if (idToNodeTask.containsKey(task.getId())) {
-            remove(task.getId());
+        remove(task.getId());
+        if (idToNodeTask.size() == capacity) {
+            evictedCount++;
+            remove(head.data.getId());
         }
         linkLast(task);
     }
@@ -38,6 +53,16 @@ public class InMemoryHistoryManager implements HistoryManager {
         return new ArrayList<>(getTasks());
     }
 
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public long getEvictedCount() {
+        return evictedCount;
+    }
+
     private void linkLast(Task task) {
         final Node<Task> oldTail = tail;
         final Node<Task> newNode = new Node<>(oldTail, task, null);
@@ -51,7 +76,7 @@ public class InMemoryHistoryManager implements HistoryManager {
     }
 
     private List<Task> getTasks() {
-        List<Task> tasks = new ArrayList<>();
+        List<Task> tasks = new ArrayList<>(idToNodeTask.size());
         Node<Task> currentNode = head;
         while (currentNode != null) {
             tasks.add(currentNode.data);
@@ -4,122 +4,257 @@ import model.Epic;
 import model.Subtask;
 import model.Task;
 import model.TaskStatus;
+import model.TaskType;
+import util.IntHashSet;
+import util.IntObjectHashMap;
+import util.PersistentIntMap;
+import util.VersionedCache;
+import util.SortedIntSet;
+import util.SortedListSet;
 
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
 import java.util.TreeSet;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 
 public class InMemoryTaskManager implements TaskManager {
-    protected final Map<Integer, Task> tasks = new HashMap<>();
-    protected final Map<Integer, Subtask> subtasks = new HashMap<>();
-    protected final Map<Integer, Epic> epics = new HashMap<>();
-    protected final HistoryManager historyManager = Managers.getDefaultHistory();
-    protected Comparator<Task> taskComparatorStartTime = (o1, o2) -> {
-        // компаратор, который считает, что EPOCH больше, чем другие
-        if (o1.getStartTime().isEqual(LocalDate.EPOCH)) {
-            return (o2.getStartTime().isEqual(LocalDate.EPOCH)) ? 0 : 1;
-        } else if (o2.getStartTime().isEqual(LocalDate.EPOCH)) {
-            return -1;
-        } else {
-            return o1.getStartTime().compareTo(o2.getStartTime());
-        }
-    };
-    protected TreeSet<Task> prioritizedTasks = new TreeSet<>(taskComparatorStartTime
-            .thenComparing(Task::getId));
+    protected final IntObjectHashMap<Task> tasks = new IntObjectHashMap<>();
+    protected final IntObjectHashMap<Subtask> subtasks = new IntObjectHashMap<>();
+    protected final IntObjectHashMap<Epic> epics = new IntObjectHashMap<>();
+    // Идентификаторы по возрастанию — для списков и постраничной выдачи без сортировки
+    protected final SortedIntSet taskIds = new SortedIntSet();
+    protected final SortedIntSet subtaskIds = new SortedIntSet();
+    protected final SortedIntSet epicIds = new SortedIntSet();
+    private final StatusIndex statusIndex = new StatusIndex();
+    private final TextIndex textIndex = new TextIndex();
+    protected final HistoryManager historyManager;
+    // Порядок по времени начала (EPOCH — в конце), затем по id: сравниваются заранее вычисленные ключи-числа
+    protected Comparator<Task> taskComparatorStartTime = (o1, o2) ->
+            Long.compare(o1.getStartSortKey(), o2.getStartSortKey());
+    protected TreeSet<Task> prioritizedTasks = new TreeSet<>(taskComparatorStartTime);
+    protected final TimeIntervalIndex timeIndex = new TimeIntervalIndex();
+    private final OccupancyCalendar calendar = new OccupancyCalendar();
+    protected final IntObjectHashMap<EpicAggregate> epicAggregates = new IntObjectHashMap<>();
+    // Эпики меняются на месте, поэтому их представления только для чтения создаются лениво и
+    // сбрасываются при каждом изменении эпика. Задачи и подзадачи хранятся уже неизменяемыми.
+    private final IntObjectHashMap<Epic> epicViews = new IntObjectHashMap<>();
+    private final TaskEventBus events = new TaskEventBus();
+    // События текущей операции: рассылаются в publishPending, когда обновлены все индексы
+    private final List<TaskEvent> pendingEvents = new ArrayList<>();
+    // Частота просмотров для списка популярных задач, пополняется вместе с историей
+    private final ViewFrequencyTracker viewFrequency = new ViewFrequencyTracker(Managers.HOT_TASKS_CAPACITY);
+    // Снимки эпиков до изменения в текущей операции и созданные эпики: событие о них публикуется
+    // один раз, после пересчёта статуса и времени
+    private final IntObjectHashMap<Epic> epicsBefore = new IntObjectHashMap<>();
+    private final IntHashSet createdEpics = new IntHashSet();
+    // Опубликованные версии хранилища для снимков: неизменяемые деревья, общие с уже выданными снимками.
+    // Изменённые эпики попадают в publishedEpics при следующем снимке
+    private PersistentIntMap<Task> publishedTasks = PersistentIntMap.empty();
+    private PersistentIntMap<Subtask> publishedSubtasks = PersistentIntMap.empty();
+    private PersistentIntMap<Epic> publishedEpics = PersistentIntMap.empty();
+    private final IntHashSet dirtyEpics = new IntHashSet();
+    private long version;
+    // Частые запросы полных списков: результат пересчитывается только после изменения версии
+    private final VersionedCache<List<Task>> tasksView = new VersionedCache<>();
+    private final VersionedCache<List<Epic>> epicsView = new VersionedCache<>();
+    private final VersionedCache<List<Subtask>> subtasksView = new VersionedCache<>();
+    private final VersionedCache<List<Task>> prioritizedView = new VersionedCache<>();
+    protected boolean isVerificationEnabled;
     protected int id;
 
+    public InMemoryTaskManager() {
+        this(Managers.getDefaultHistory());
+    }
+
+    protected InMemoryTaskManager(HistoryManager historyManager) {
+        this.historyManager = historyManager;
+    }
+
+    // Режим проверки: после каждого изменения эпик дополнительно пересчитывается по всем подзадачам,
+    // а проверка пересечений по календарю сверяется с индексом интервалов
+    public void setVerificationEnabled(boolean isVerificationEnabled) {
+        this.isVerificationEnabled = isVerificationEnabled;
+    }
+
+    // События операции публикуются после её завершения, когда хранилище и все индексы уже обновлены
+    public TaskEventBus getEventBus() {
+        return events;
+    }
+
     // Методы получения списка всех задач
     @Override
     public ArrayList<Task> getListOfAllTasks() {
-        final List<Task> tasks = new ArrayList<>(this.tasks.values());
-        return tasks.stream().map(Task::new)
-                .sorted(Comparator.comparing(Task::getId)).collect(Collectors.toCollection(ArrayList::new));
+        return getTasksView().stream().map(Task::new).collect(Collectors.toCollection(ArrayList::new));
     }
 
     @Override
     public ArrayList<Epic> getListOfAllEpics() {
-        final List<Epic> epics = new ArrayList<>(this.epics.values());
-        return epics.stream().map(Epic::new)
-                .sorted(Comparator.comparing(Task::getId)).collect(Collectors.toCollection(ArrayList::new));
+        return getEpicsView().stream().map(Epic::new).collect(Collectors.toCollection(ArrayList::new));
     }
 
     @Override
     public ArrayList<Subtask> getListOfAllSubtasks() {
-        final List<Subtask> subtasks = new ArrayList<>(this.subtasks.values());
-        return subtasks.stream().map(Subtask::new)
-                .sorted(Comparator.comparing(Task::getId)).collect(Collectors.toCollection(ArrayList::new));
+        return getSubtasksView().stream().map(Subtask::new).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    // Представления только для чтения
+    @Override
+    public List<Task> getTasksView() {
+        return tasksView.get(version, () -> getTasksPage(Integer.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public List<Epic> getEpicsView() {
+        return epicsView.get(version, () -> getEpicsPage(Integer.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public List<Subtask> getSubtasksView() {
+        return subtasksView.get(version, () -> getSubtasksPage(Integer.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    // Версия растёт при каждом изменении задач; просмотры (история) её не меняют
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    // Постраничное получение
+    @Override
+    public List<Task> getTasksPage(int afterId, int limit) {
+        return page(taskIds, afterId, limit, tasks::get);
+    }
+
+    @Override
+    public List<Epic> getEpicsPage(int afterId, int limit) {
+        return page(epicIds, afterId, limit, this::epicView);
+    }
+
+    @Override
+    public List<Subtask> getSubtasksPage(int afterId, int limit) {
+        return page(subtaskIds, afterId, limit, subtasks::get);
     }
 
     // Удаление всех задач
     @Override
     public void deleteAllTasks() {
+        publishDeleted(taskIds, tasks::get);
         clearAllHistory(tasks);
-        prioritizedTasks.removeAll(tasks.values());
+        tasks.forEachKey(viewFrequency::remove);
+        tasks.values().forEach(this::removePrioritized);
+        tasks.values().forEach(textIndex::remove);
         tasks.clear();
+        taskIds.clear();
+        statusIndex.clear(TaskType.TASK);
+        publishedTasks = PersistentIntMap.empty();
+        version++;
+        publishPending();
     }
 
     @Override
     public void deleteAllEpics() {
+        publishDeleted(subtaskIds, subtasks::get);
+        publishDeleted(epicIds, this::epicView);
         clearAllHistory(subtasks);
         clearAllHistory(epics);
-        prioritizedTasks.removeAll(subtasks.values());
+        subtasks.forEachKey(viewFrequency::remove);
+        epics.forEachKey(viewFrequency::remove);
+        subtasks.values().forEach(this::removePrioritized);
+        subtasks.values().forEach(textIndex::remove);
+        epics.values().forEach(textIndex::remove);
         subtasks.clear();
+        subtaskIds.clear();
+        statusIndex.clear(TaskType.SUBTASK);
         epics.clear();
+        epicIds.clear();
+        statusIndex.clear(TaskType.EPIC);
+        epicAggregates.clear();
+        epicViews.clear();
+        epicsBefore.clear();
+        createdEpics.clear();
+        publishedSubtasks = PersistentIntMap.empty();
+        publishedEpics = PersistentIntMap.empty();
+        dirtyEpics.clear();
+        version++;
+        publishPending();
     }
 
     @Override
     public void deleteAllSubtasks() {
+        publishDeleted(subtaskIds, subtasks::get);
         clearAllHistory(subtasks);
+        subtasks.forEachKey(viewFrequency::remove);
         for (Epic epic : epics.values()) {
+            captureEpic(epic);
             epic.clearAllSubtasks();
-            changeEpicStatus(epic);
-            calculateEpicTime(epic);
+            epicAggregates.put(epic.getId(), new EpicAggregate());
+            refreshEpic(epic);
         }
-        prioritizedTasks.removeAll(subtasks.values());
+        subtasks.values().forEach(this::removePrioritized);
+        subtasks.values().forEach(textIndex::remove);
         subtasks.clear();
+        subtaskIds.clear();
+        statusIndex.clear(TaskType.SUBTASK);
+        publishedSubtasks = PersistentIntMap.empty();
+        version++;
+        publishPending();
     }
 
     // Получение по ID
     @Override
     public Task getTaskById(int id) {
+        Task task = getTaskView(id);
+        return task == null ? null : new Task(task);
+    }
+
+    @Override
+    public Epic getEpicById(int id) {
+        Epic epic = getEpicView(id);
+        return epic == null ? null : new Epic(epic);
+    }
+
+    @Override
+    public Subtask getSubtaskById(int id) {
+        Subtask subtask = getSubtaskView(id);
+        return subtask == null ? null : new Subtask(subtask);
+    }
+
+    @Override
+    public Task getTaskView(int id) {
         Task task = tasks.get(id);
         if (task != null) {
-            task = new Task(task);
             historyManager.add(task);
-            return task;
+            viewFrequency.add(id);
         }
-        return null;
+        return task;
     }
 
     @Override
-    public Epic getEpicById(int id) {
-        Epic epic = epics.get(id);
+    public Epic getEpicView(int id) {
+        Epic epic = epicView(id);
         if (epic != null) {
-            epic = new Epic(epic);
             historyManager.add(epic);
-            return epic;
+            viewFrequency.add(id);
         }
-        return null;
+        return epic;
     }
 
     @Override
-    public Subtask getSubtaskById(int id) {
+    public Subtask getSubtaskView(int id) {
         Subtask subtask = subtasks.get(id);
         if (subtask != null) {
-            subtask = new Subtask(subtask);
             historyManager.add(subtask);
-            return subtask;
+            viewFrequency.add(id);
         }
-        return null;
+        return subtask;
     }
 
     // Создание
@@ -129,9 +264,11 @@ public class InMemoryTaskManager implements TaskManager {
             return;
         }
         validateCorrectTaskTime(task);
-        task.setId(++id);
-        tasks.put(task.getId(), new Task(task));
-        prioritizedTasks.add(new Task(task));
+        task.setId(nextId());
+        Task storedTask = task.asReadOnly();
+        storeTask(storedTask);
+        addPrioritized(storedTask);
+        publishPending();
     }
 
     @Override
@@ -139,8 +276,12 @@ public class InMemoryTaskManager implements TaskManager {
         if (epic == null) {
             return;
         }
-        epic.setId(++id);
-        epics.put(epic.getId(), new Epic(epic));
+        epic.setId(nextId());
+        Epic storedEpic = new Epic(epic);
+        storeEpic(storedEpic);
+        rebuildEpicAggregate(storedEpic);
+        publishEpicChange(storedEpic.getId());
+        publishPending();
     }
 
     @Override
@@ -154,13 +295,18 @@ public class InMemoryTaskManager implements TaskManager {
             throw new ManagerSaveException("Эпик с таким id не существует");
         }
         validateCorrectTaskTime(subtask);
-        subtask.setId(++id);
-        subtasks.put(subtask.getId(), new Subtask(subtask));
-        prioritizedTasks.add(new Subtask(subtask));
+        subtask.setId(nextId());
+        Subtask storedSubtask = subtask.asReadOnly();
+        storeSubtask(storedSubtask);
+        addPrioritized(storedSubtask);
         Epic epic = epics.get(epicId);
-        epic.addSubtask(subtask.getId());
-        changeEpicStatus(epic);
-        calculateEpicTime(epic);
+        captureEpic(epic);
+        if (!epic.hasSubtask(subtask.getId())) {
+            epic.addSubtask(subtask.getId());
+        }
+        epicAggregates.get(epicId).add(storedSubtask);
+        refreshEpic(epic);
+        publishPending();
     }
 
     // Обновление
@@ -173,13 +319,10 @@ public class InMemoryTaskManager implements TaskManager {
         if (!isTaskExist) {
             throw new ManagerSaveException("Задача с таким id не существует");
         }
-        if (prioritizedTasks.contains(tasks.get(task.getId()))) {
-            prioritizedTasks.remove(tasks.get(task.getId()));
-            validateCorrectTaskTime(task);
-            prioritizedTasks.add(new Task(task));
-        }
-        tasks.put(task.getId(), new Task(task));
-
+        Task storedTask = new Task(task).asReadOnly();
+        replacePrioritized(tasks.get(task.getId()), storedTask);
+        storeTask(storedTask);
+        publishPending();
     }
 
     @Override
@@ -191,13 +334,14 @@ public class InMemoryTaskManager implements TaskManager {
         if (!isEpicExist) {
             throw new ManagerSaveException("Эпик с таким id не существует");
         }
-        if (!subtasks.keySet().containsAll(epic.getSubtasks())) {
+        if (!epic.getSubtasks().stream().allMatch(subtasks::containsKey)) {
             throw new ManagerSaveException("При обновлении был получен эпик с неправильными подзадачами");
         }
-        changeEpicStatus(epic);
-        calculateEpicTime(epic);
-        epics.put(epic.getId(), new Epic(epic));
-
+        Epic storedEpic = new Epic(epic);
+        rebuildEpicAggregate(storedEpic);
+        storeEpic(storedEpic);
+        refreshEpic(storedEpic);
+        publishPending();
     }
 
     @Override
@@ -210,15 +354,26 @@ public class InMemoryTaskManager implements TaskManager {
         if (!isSubtaskExist || !isEpicExist) {
             throw new ManagerSaveException("Подзадача и/или эпик с таким id не существуют");
         }
-        if (prioritizedTasks.contains(subtasks.get(subtask.getId()))) {
-            prioritizedTasks.remove(subtasks.get(subtask.getId()));
-            validateCorrectTaskTime(subtask);
-            prioritizedTasks.add(new Subtask(subtask));
-        }
-        subtasks.put(subtask.getId(), new Subtask(subtask));
+        Subtask oldSubtask = subtasks.get(subtask.getId());
+        Subtask storedSubtask = new Subtask(subtask).asReadOnly();
+        replacePrioritized(oldSubtask, storedSubtask);
+        storeSubtask(storedSubtask);
+        Epic oldEpic = epics.get(oldSubtask.getEpicId());
         Epic epic = epics.get(subtask.getEpicId());
-        changeEpicStatus(epic);
-        calculateEpicTime(epic);
+        captureEpic(oldEpic);
+        captureEpic(epic);
+        if (oldEpic.hasSubtask(subtask.getId())) {
+            epicAggregates.get(oldEpic.getId()).remove(oldSubtask);
+        }
+        if (oldEpic != epic) {
+            // подзадача перенесена в другой эпик
+            oldEpic.removeSubtaskById(subtask.getId());
+            refreshEpic(oldEpic);
+            epic.addSubtask(subtask.getId());
+        }
+        epicAggregates.get(epic.getId()).add(storedSubtask);
+        refreshEpic(epic);
+        publishPending();
     }
 
     // Получение списка всех подзадач определенного эпика
@@ -234,6 +389,22 @@ public class InMemoryTaskManager implements TaskManager {
         return new ArrayList<>(subtasks);
     }
 
+    @Override
+    public List<Subtask> getEpicSubtasksView(int epicId) {
+        Epic epic = epics.get(epicId);
+        if (epic == null) {
+            return List.of();
+        }
+        List<Subtask> subtasks = new ArrayList<>(epic.getSubtasksCount());
+        epic.forEachSubtask(subtaskId -> {
+            Subtask subtask = this.subtasks.get(subtaskId);
+            if (subtask != null) {
+                subtasks.add(subtask);
+            }
+        });
+        return sortedById(subtasks);
+    }
+
     // Удаление по идентификатору
     @Override
     public void deleteTaskById(int id) {
@@ -242,8 +413,9 @@ public class InMemoryTaskManager implements TaskManager {
             throw new ManagerRemoveException("Невозможно удалить задачу с несуществующим id");
         }
         historyManager.remove(id);
-        prioritizedTasks.remove(tasks.get(id));
-        tasks.remove(id);
+        removePrioritized(tasks.get(id));
+        discardTasks(id);
+        publishPending();
     }
 
     @Override
@@ -252,13 +424,15 @@ public class InMemoryTaskManager implements TaskManager {
         if (!isEpicExist) {
             throw new ManagerRemoveException("Невозможно удалить эпик с несуществующим id");
         }
-        for (Integer key : epics.get(id).getSubtasks()) {
+        Epic epic = epics.get(id);
+        epic.forEachSubtask(key -> {
             historyManager.remove(key);
-            prioritizedTasks.remove(subtasks.get(key));
-            subtasks.remove(key);
-        }
+            removePrioritized(subtasks.get(key));
+        });
+        discardSubtasks(epic.getSubtasks().stream().mapToInt(Integer::intValue).toArray());
         historyManager.remove(id);
-        epics.remove(id);
+        discardEpic(id);
+        publishPending();
     }
 
     @Override
@@ -267,13 +441,181 @@ public class InMemoryTaskManager implements TaskManager {
         if (!isSubtaskExist) {
             throw new ManagerRemoveException("Невозможно удалить подзадачу с несуществующим id");
         }
-        Epic epic = epics.get(subtasks.get(id).getEpicId());
+        Subtask subtask = subtasks.get(id);
+        Epic epic = epics.get(subtask.getEpicId());
         historyManager.remove(id);
-        prioritizedTasks.remove(subtasks.get(id));
-        subtasks.remove(id);
+        removePrioritized(subtask);
+        discardSubtasks(id);
+        if (epic.hasSubtask(id)) {
+            epicAggregates.get(epic.getId()).remove(subtask);
+        }
+        captureEpic(epic);
         epic.removeSubtaskById(id);
-        changeEpicStatus(epic);
-        calculateEpicTime(epic);
+        refreshEpic(epic);
+        publishPending();
+    }
+
+    // Выборка по статусу
+    @Override
+    public List<Task> getByStatus(TaskType type, TaskStatus status) {
+        int[] ids = statusIndex.ids(type, status);
+        List<Task> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            switch (type) {
+                case TASK:
+                    result.add(tasks.get(id));
+                    break;
+                case EPIC:
+                    result.add(epicView(id));
+                    break;
+                case SUBTASK:
+                    result.add(subtasks.get(id));
+                    break;
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public int countByStatus(TaskType type, TaskStatus status) {
+        return statusIndex.count(type, status);
+    }
+
+    // Самые просматриваемые задачи; удалённые задачи перестают отслеживаться при удалении, здесь только пропускаются
+    @Override
+    public List<Task> getHotTasks(int limit) {
+        List<Task> result = new ArrayList<>();
+        for (int id : viewFrequency.top(viewFrequency.getCapacity())) {
+            if (result.size() >= limit) {
+                break;
+            }
+            Task task = tasks.get(id);
+            if (task == null) {
+                task = subtasks.get(id);
+            }
+            if (task == null) {
+                task = epicView(id);
+            }
+            if (task != null) {
+                result.add(task);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public void recordView(int id) {
+        if (tasks.containsKey(id) || subtasks.containsKey(id) || epics.containsKey(id)) {
+            viewFrequency.add(id);
+        }
+    }
+
+    // Оценка числа просмотров задачи
+    int getViewCount(int id) {
+        return viewFrequency.estimate(id);
+    }
+
+    // Поиск по словам названия и описания
+    @Override
+    public List<Task> search(String query, int limit) {
+        int[] ids = textIndex.search(query, limit);
+        List<Task> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Task task = tasks.get(id);
+            if (task == null) {
+                task = subtasks.get(id);
+            }
+            result.add(task == null ? epicView(id) : task);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    // Пакетные изменения
+    @Override
+    public void createAll(List<? extends Task> tasks) {
+        List<BatchOperation> operations = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            operations.add(BatchOperation.create(task));
+        }
+        applyBatch(operations);
+    }
+
+    @Override
+    public void applyBatch(List<BatchOperation> operations) {
+        BatchPlan plan = new BatchPlan(id);
+        planBatch(plan, operations);
+        commitBatch(plan);
+    }
+
+    // Проверка пакета без изменения хранилища; при ошибке бросает исключение
+    void planBatch(BatchPlan plan, List<BatchOperation> operations) {
+        for (BatchOperation operation : operations) {
+            switch (operation.getKind()) {
+                case CREATE:
+                    planCreate(plan, operation.getTask());
+                    break;
+                case UPDATE:
+                    planUpdate(plan, operation.getTask());
+                    break;
+                case DELETE:
+                    planDelete(plan, operation.getType(), operation.getId());
+                    break;
+            }
+        }
+        validateBatchTime(plan);
+    }
+
+    // Идентификатор для новой задачи
+    protected int nextId() {
+        return ++id;
+    }
+
+    // Статус и время эпика берутся из накопленных агрегатов его подзадач
+    protected void refreshEpic(Epic epic) {
+        invalidateEpic(epic.getId());
+        EpicAggregate aggregate = epicAggregates.get(epic.getId());
+        TaskStatus oldStatus = epic.getTaskStatus();
+        epic.setTaskStatus(aggregate.getStatus());
+        if (oldStatus != epic.getTaskStatus()) {
+            statusIndex.remove(TaskType.EPIC, oldStatus, epic.getId());
+            statusIndex.add(TaskType.EPIC, epic.getTaskStatus(), epic.getId());
+        }
+        if (!aggregate.isEmpty()) {
+            epic.setStartTime(aggregate.getStartTime());
+            epic.setDuration(aggregate.getDuration());
+            epic.setEndTime(aggregate.getEndTime());
+        }
+        if (isVerificationEnabled) {
+            try {
+                verifyEpic(epic);
+            } catch (IllegalStateException e) {
+                // операция прервана: её события не должны уйти вместе со следующей
+                pendingEvents.clear();
+                throw e;
+            }
+        }
+        publishEpicChange(epic.getId());
+    }
+
+    protected void rebuildEpicAggregate(Epic epic) {
+        EpicAggregate aggregate = new EpicAggregate();
+        epic.forEachSubtask(subtaskId -> {
+            Subtask subtask = subtasks.get(subtaskId);
+            if (subtask != null) {
+                aggregate.add(subtask);
+            }
+        });
+        epicAggregates.put(epic.getId(), aggregate);
+    }
+
+    // Полный пересчёт эпика по всем подзадачам — используется только в режиме проверки
+    private void verifyEpic(Epic epic) {
+        Epic expected = new Epic(epic);
+        changeEpicStatus(expected);
+        calculateEpicTime(expected);
+        if (!expected.equals(epic)) {
+            throw new IllegalStateException("Агрегаты эпика " + epic + " расходятся с подзадачами: " + expected);
+        }
     }
 
     private void changeEpicStatus(Epic epic) {
@@ -331,31 +673,516 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public List<Task> getPrioritizedTasks() {
-        return new ArrayList<>(prioritizedTasks);
+        return new ArrayList<>(getPrioritizedTasksView());
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasksView() {
+        return prioritizedView.get(version, () -> Collections.unmodifiableList(new ArrayList<>(prioritizedTasks)));
+    }
+
+    // Выборка по времени: только диапазон prioritizedTasks, без копирования всего множества
+    @Override
+    public List<Task> getTasksBetween(LocalDate from, LocalDate to) {
+        // EPOCH означает «без времени» и в компараторе больше любой даты, поэтому в границы диапазона не входит
+        if (from.isEqual(LocalDate.EPOCH)) {
+            from = from.plusDays(1);
+        }
+        if (to.isEqual(LocalDate.EPOCH)) {
+            to = to.minusDays(1);
+        }
+        if (from.isAfter(to)) {
+            return List.of();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(prioritizedTasks.subSet(
+                rangeBound(from, Integer.MIN_VALUE), true, rangeBound(to, Integer.MAX_VALUE), true)));
+    }
+
+    // Интервалы задач не пересекаются, поэтому из начавшихся раньше from в диапазон может заходить только одна
+    @Override
+    public List<Task> getTasksOverlapping(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            return List.of();
+        }
+        LocalDateTime rangeStart = LocalDateTime.of(from, LocalTime.MIN);
+        List<Task> result = new ArrayList<>();
+        Task previous = timeIndex.lastStartingBefore(rangeStart);
+        if (previous != null && previous.getEndTime().isAfter(rangeStart)) {
+            result.add(previous);
+        }
+        result.addAll(getTasksBetween(from, to));
+        return Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public LocalDate findEarliestSlot(Duration duration, LocalDate notBefore) {
+        if (duration.isNegative()) {
+            throw new IllegalArgumentException("Длительность не может быть отрицательной");
+        }
+        // EPOCH означает «без времени», поэтому такой датой слот быть не может
+        if (notBefore.isEqual(LocalDate.EPOCH)) {
+            notBefore = notBefore.plusDays(1);
+        }
+        return timeIndex.findEarliestSlot(duration, notBefore);
+    }
+
+    private static Task rangeBound(LocalDate startTime, int id) {
+        Task bound = new Task("", "", TaskStatus.NEW, startTime, Duration.ZERO);
+        bound.setId(id);
+        return bound;
+    }
+
+    // Согласованный снимок всех задач: опубликованные деревья не меняются, поэтому снимок не копирует хранилище.
+    // Дополнительно публикуются копии эпиков, изменённых после предыдущего снимка
+    @Override
+    public TaskManagerSnapshot snapshot() {
+        dirtyEpics.forEach(id -> {
+            Epic epic = epicView(id);
+            publishedEpics = epic == null ? publishedEpics.remove(id) : publishedEpics.put(id, epic);
+        });
+        dirtyEpics.clear();
+        return new TaskManagerSnapshot(version, publishedTasks, publishedEpics, publishedSubtasks);
+    }
+
+    protected Epic epicView(int id) {
+        Epic view = epicViews.get(id);
+        if (view == null) {
+            Epic epic = epics.get(id);
+            if (epic == null) {
+                return null;
+            }
+            view = epic.asReadOnly();
+            epicViews.put(id, view);
+        }
+        return view;
+    }
+
+    private static <T extends Task> List<T> sortedById(Collection<T> tasks) {
+        List<T> sorted = new ArrayList<>(tasks);
+        sorted.sort(Comparator.comparingInt(Task::getId));
+        return Collections.unmodifiableList(sorted);
+    }
+
+    private static <T extends Task> List<T> page(SortedIntSet ids, int afterId, int limit, IntFunction<T> byId) {
+        int from = ids.indexAfter(afterId);
+        int to = (int) Math.min(ids.size(), (long) from + Math.max(limit, 0));
+        List<T> page = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            page.add(byId.apply(ids.get(i)));
+        }
+        return Collections.unmodifiableList(page);
+    }
+
+    // Все изменения хранилища проходят через store* и discard*: они поддерживают вторичные индексы
+    protected void storeTask(Task task) {
+        store(tasks, taskIds, task);
+        publishedTasks = publishedTasks.put(task.getId(), task);
+    }
+
+    protected void storeSubtask(Subtask subtask) {
+        store(subtasks, subtaskIds, subtask);
+        publishedSubtasks = publishedSubtasks.put(subtask.getId(), subtask);
+    }
+
+    protected void storeEpic(Epic epic) {
+        boolean isNew = !epics.containsKey(epic.getId());
+        if (isNew && events.hasSubscribers()) {
+            createdEpics.add(epic.getId());
+        } else if (!isNew) {
+            captureEpic(epics.get(epic.getId()));
+        }
+        store(epics, epicIds, epic);
+        invalidateEpic(epic.getId());
+    }
+
+    // Идентификаторы передаются по возрастанию
+    protected void discardTasks(int... sortedIds) {
+        discard(tasks, taskIds, sortedIds);
+        for (int id : sortedIds) {
+            publishedTasks = publishedTasks.remove(id);
+        }
+    }
+
+    protected void discardSubtasks(int... sortedIds) {
+        discard(subtasks, subtaskIds, sortedIds);
+        for (int id : sortedIds) {
+            publishedSubtasks = publishedSubtasks.remove(id);
+        }
+    }
+
+    protected void discardEpic(int id) {
+        Epic before = events.hasSubscribers() ? epicView(id) : null;
+        discard(epics, epicIds, id);
+        epicAggregates.remove(id);
+        invalidateEpic(id);
+        epicsBefore.remove(id);
+        createdEpics.remove(id);
+        if (before != null) {
+            publish(TaskEvent.Kind.DELETED, before, null);
+        }
+    }
+
+    private <T extends Task> void store(IntObjectHashMap<T> storage, SortedIntSet ids, T task) {
+        T oldTask = storage.put(task.getId(), task);
+        if (oldTask == null) {
+            ids.add(task.getId());
+            textIndex.add(task);
+        } else {
+            statusIndex.remove(oldTask.getType(), oldTask.getTaskStatus(), oldTask.getId());
+            textIndex.replace(oldTask, task);
+        }
+        statusIndex.add(task.getType(), task.getTaskStatus(), task.getId());
+        version++;
+        // эпик меняется и после сохранения, поэтому событие о нём публикует publishEpicChange
+        if (task.getType() != TaskType.EPIC && events.hasSubscribers()) {
+            publish(oldTask == null ? TaskEvent.Kind.CREATED : TaskEvent.Kind.UPDATED, oldTask, task);
+        }
+    }
+
+    private void discard(IntObjectHashMap<? extends Task> storage, SortedIntSet ids, int... sortedIds) {
+        if (sortedIds.length == 0) {
+            return;
+        }
+        for (int id : sortedIds) {
+            Task task = storage.remove(id);
+            if (task != null) {
+                statusIndex.remove(task.getType(), task.getTaskStatus(), id);
+                textIndex.remove(task);
+                viewFrequency.remove(id);
+                if (task.getType() != TaskType.EPIC && events.hasSubscribers()) {
+                    publish(TaskEvent.Kind.DELETED, task, null);
+                }
+            }
+        }
+        ids.removeAll(sortedIds);
+        version++;
+    }
+
+    // Эпик изменился: сбрасывается его представление и копия для снимков
+    private void invalidateEpic(int id) {
+        epicViews.remove(id);
+        dirtyEpics.add(id);
+    }
+
+    // Снимок эпика перед изменением на месте; повторные изменения в той же операции его не перезаписывают
+    private void captureEpic(Epic epic) {
+        if (events.hasSubscribers() && !epicsBefore.containsKey(epic.getId())) {
+            epicsBefore.put(epic.getId(), epicView(epic.getId()));
+        }
+    }
+
+    private void publishEpicChange(int id) {
+        Epic before = epicsBefore.remove(id);
+        boolean isCreated = createdEpics.remove(id);
+        if (!events.hasSubscribers()) {
+            return;
+        }
+        if (isCreated) {
+            publish(TaskEvent.Kind.CREATED, null, epicView(id));
+        } else if (before != null) {
+            publish(TaskEvent.Kind.UPDATED, before, epicView(id));
+        }
+    }
+
+    private void publishDeleted(SortedIntSet ids, IntFunction<? extends Task> byId) {
+        if (events.hasSubscribers()) {
+            ids.forEach(id -> publish(TaskEvent.Kind.DELETED, byId.apply(id), null));
+        }
+    }
+
+    private void publish(TaskEvent.Kind kind, Task before, Task after) {
+        pendingEvents.add(new TaskEvent(kind, before, after));
+    }
+
+    // Вызывается в конце каждой изменяющей операции: исключение подписчика доходит до вызывающего кода,
+    // но уже после того, как изменение применено целиком
+    private void publishPending() {
+        if (pendingEvents.isEmpty()) {
+            return;
+        }
+        List<TaskEvent> published = new ArrayList<>(pendingEvents);
+        pendingEvents.clear();
+        events.publish(published);
     }
 
-    private boolean isValidTaskInTime(Task task1, Task task2) {
-        LocalDateTime startTimeTask1 = LocalDateTime.of(task1.getStartTime(), LocalTime.MIN);
-        LocalDateTime startTimeTask2 = LocalDateTime.of(task2.getStartTime(), LocalTime.MIN);
-        if (startTimeTask1.isAfter(task2.getEndTime()) || task1.getEndTime().isBefore(startTimeTask2)) {
-            return true;
+    private void planCreate(BatchPlan plan, Task task) {
+        if (task == null) {
+            return;
+        }
+        Task copy = copyOf(task);
+        copy.setId(plan.nextId());
+        if (copy.getType() == TaskType.SUBTASK) {
+            Epic epic = batchEpic(plan, ((Subtask) copy).getEpicId());
+            if (epic == null) {
+                throw new ManagerSaveException("Эпик с таким id не существует");
+            }
+            epic.addSubtask(copy.getId());
+        }
+        plan.changed.put(copy.getId(), copy);
+        plan.created.add(task);
+    }
+
+    private void planUpdate(BatchPlan plan, Task task) {
+        if (task == null) {
+            throw new ManagerSaveException("Получена нулевая задача");
+        }
+        Task current = batchGet(plan, task.getId());
+        switch (task.getType()) {
+            case TASK:
+                if (current == null || current.getType() != TaskType.TASK) {
+                    throw new ManagerSaveException("Задача с таким id не существует");
+                }
+                break;
+            case EPIC:
+                if (current == null || current.getType() != TaskType.EPIC) {
+                    throw new ManagerSaveException("Эпик с таким id не существует");
+                }
+                for (Integer subtaskId : ((Epic) task).getSubtasks()) {
+                    Task subtask = batchGet(plan, subtaskId);
+                    if (subtask == null || subtask.getType() != TaskType.SUBTASK) {
+                        throw new ManagerSaveException("При обновлении был получен эпик с неправильными подзадачами");
+                    }
+                }
+                break;
+            case SUBTASK:
+                Subtask subtask = (Subtask) task;
+                Epic epic = batchEpic(plan, subtask.getEpicId());
+                if (current == null || current.getType() != TaskType.SUBTASK || epic == null) {
+                    throw new ManagerSaveException("Подзадача и/или эпик с таким id не существуют");
+                }
+                Epic oldEpic = batchEpic(plan, ((Subtask) current).getEpicId());
+                if (oldEpic != epic) {
+                    // подзадача перенесена в другой эпик
+                    oldEpic.removeSubtaskById(subtask.getId());
+                    epic.addSubtask(subtask.getId());
+                }
+                break;
+        }
+        plan.changed.put(task.getId(), copyOf(task));
+    }
+
+    private void planDelete(BatchPlan plan, TaskType type, int id) {
+        Task current = batchGet(plan, id);
+        boolean isExist = current != null && current.getType() == type;
+        switch (type) {
+            case TASK:
+                if (!isExist) {
+                    throw new ManagerRemoveException("Невозможно удалить задачу с несуществующим id");
+                }
+                break;
+            case EPIC:
+                if (!isExist) {
+                    throw new ManagerRemoveException("Невозможно удалить эпик с несуществующим id");
+                }
+                ((Epic) current).forEachSubtask(plan::remove);
+                break;
+            case SUBTASK:
+                if (!isExist) {
+                    throw new ManagerRemoveException("Невозможно удалить подзадачу с несуществующим id");
+                }
+                batchEpic(plan, ((Subtask) current).getEpicId()).removeSubtaskById(id);
+                break;
+        }
+        plan.remove(id);
+    }
+
+    // Итоговые интервалы пакета проверяются между собой и с индексом без учёта заменяемых и удаляемых задач
+    private void validateBatchTime(BatchPlan plan) {
+        List<Task> timedTasks = new ArrayList<>();
+        for (Task task : plan.changed.values()) {
+            if (task.getType() == TaskType.EPIC) {
+                continue;
+            }
+            if (timeIndex.hasOverlap(task, other -> plan.isTouched(other.getId()))) {
+                throw new ManagerSaveException("У задачи" + task + " есть пересечение во времени");
+            }
+            if (TimeIntervalIndex.isTimed(task)) {
+                timedTasks.add(task);
+            }
+        }
+        timedTasks.sort(Comparator.comparing(Task::getStartTime));
+        for (int i = 1; i < timedTasks.size(); i++) {
+            Task task = timedTasks.get(i);
+            if (!timedTasks.get(i - 1).getEndTime().isBefore(TimeIntervalIndex.startOf(task))) {
+                throw new ManagerSaveException("У задачи" + task + " есть пересечение во времени");
+            }
         }
-        return false;
     }
 
+    // Применение проверенного пакета: сначала из индексов убираются прежние версии, затем добавляются итоговые,
+    // каждый затронутый эпик пересчитывается один раз
+    void commitBatch(BatchPlan plan) {
+        long versionBefore = version;
+        IntHashSet removedTaskIds = new IntHashSet();
+        IntHashSet removedSubtaskIds = new IntHashSet();
+        plan.removed.forEach(removedId -> {
+            if (tasks.containsKey(removedId)) {
+                removePrioritized(tasks.get(removedId));
+                removedTaskIds.add(removedId);
+            } else if (subtasks.containsKey(removedId)) {
+                removePrioritized(subtasks.get(removedId));
+                removedSubtaskIds.add(removedId);
+            } else if (epics.containsKey(removedId)) {
+                discardEpic(removedId);
+            } else {
+                // задача создана и удалена в одном пакете
+                return;
+            }
+            historyManager.remove(removedId);
+        });
+        if (!removedTaskIds.isEmpty()) {
+            discardTasks(removedTaskIds.toSortedArray());
+        }
+        if (!removedSubtaskIds.isEmpty()) {
+            discardSubtasks(removedSubtaskIds.toSortedArray());
+        }
+
+        // события публикуются в порядке id
+        List<Task> changed = sortedById(plan.changed.values());
+        for (Task task : changed) {
+            Task oldTask = task.getType() == TaskType.TASK ? tasks.get(task.getId()) : subtasks.get(task.getId());
+            if (oldTask != null) {
+                removePrioritized(oldTask);
+            }
+        }
+        for (Task task : changed) {
+            switch (task.getType()) {
+                case TASK:
+                    Task storedTask = task.asReadOnly();
+                    storeTask(storedTask);
+                    addPrioritized(storedTask);
+                    break;
+                case SUBTASK:
+                    Subtask storedSubtask = ((Subtask) task).asReadOnly();
+                    storeSubtask(storedSubtask);
+                    addPrioritized(storedSubtask);
+                    break;
+                case EPIC:
+                    storeEpic((Epic) task);
+                    break;
+            }
+        }
+        for (Task task : changed) {
+            if (task.getType() == TaskType.EPIC) {
+                Epic epic = epics.get(task.getId());
+                rebuildEpicAggregate(epic);
+                refreshEpic(epic);
+            }
+        }
+        for (int i = 0; i < plan.created.size(); i++) {
+            plan.created.get(i).setId(plan.createdId(i));
+        }
+        id = Math.max(id, plan.lastId);
+        // пакет — одно изменение: кэши по версии сбрасываются один раз
+        if (version != versionBefore) {
+            version = versionBefore + 1;
+        }
+        publishPending();
+    }
+
+    // Текущее состояние задачи с учётом пакета; null — задачи нет или она удалена пакетом
+    private Task batchGet(BatchPlan plan, int id) {
+        if (plan.removed.contains(id)) {
+            return null;
+        }
+        Task task = plan.changed.get(id);
+        if (task == null) {
+            task = tasks.get(id);
+        }
+        if (task == null) {
+            task = subtasks.get(id);
+        }
+        return task == null ? epics.get(id) : task;
+    }
+
+    // Изменяемая копия эпика в пакете: её подзадачи меняются вместе с операциями пакета
+    private Epic batchEpic(BatchPlan plan, int id) {
+        Task task = batchGet(plan, id);
+        if (task == null || task.getType() != TaskType.EPIC) {
+            return null;
+        }
+        if (!plan.changed.containsKey(id)) {
+            task = new Epic((Epic) task);
+            plan.changed.put(id, task);
+        }
+        return (Epic) task;
+    }
+
+    private static Task copyOf(Task task) {
+        switch (task.getType()) {
+            case EPIC:
+                return new Epic((Epic) task);
+            case SUBTASK:
+                return new Subtask((Subtask) task);
+            default:
+                return new Task(task);
+        }
+    }
+
+    // Задачи со временем проверяются по календарю занятости — только дни, на которые приходится задача
     protected void validateCorrectTaskTime(Task task) throws ManagerSaveException {
-        Optional<Task> wrongTimeTask = getPrioritizedTasks().stream()
-                .takeWhile(t -> !t.getStartTime().isEqual(LocalDate.EPOCH))
-                .filter(t -> !isValidTaskInTime(t, task))
-                .findFirst();
-        if (wrongTimeTask.isPresent()) {
+        boolean hasOverlap = TimeIntervalIndex.isTimed(task) ? !calendar.isFree(task) : timeIndex.hasOverlap(task);
+        if (isVerificationEnabled && hasOverlap != timeIndex.hasOverlap(task)) {
+            throw new IllegalStateException("Календарь занятости расходится с индексом интервалов для " + task);
+        }
+        if (hasOverlap) {
             throw new ManagerSaveException("У задачи" + task + " есть пересечение во времени");
         }
     }
 
-    private <T extends Task> void clearAllHistory(Map<Integer, T> idToTask) {
-        for (Integer id : idToTask.keySet()) {
-            historyManager.remove(id);
+    protected void addPrioritized(Task task) {
+        prioritizedTasks.add(task);
+        timeIndex.add(task);
+        if (TimeIntervalIndex.isTimed(task)) {
+            calendar.occupy(task);
+        }
+    }
+
+    // Массовое добавление загруженных задач: одна сортировка, пересечения проверяются только между соседями
+    // по времени, а дерево prioritizedTasks строится из отсортированной последовательности за O(n)
+    protected void addAllPrioritized(List<Task> loaded) {
+        List<Task> sorted = new ArrayList<>(loaded);
+        sorted.sort(taskComparatorStartTime);
+        Task previous = null;
+        for (Task task : sorted) {
+            // задачи без времени идут последними, когда все задачи со временем уже в индексе
+            boolean hasOverlap = TimeIntervalIndex.isTimed(task)
+                    ? previous != null && TimeIntervalIndex.endMinute(previous) >= TimeIntervalIndex.startMinute(task)
+                    : timeIndex.hasOverlap(task);
+            if (hasOverlap) {
+                throw new ManagerSaveException("У задачи" + task + " есть пересечение во времени");
+            }
+            timeIndex.add(task);
+            if (TimeIntervalIndex.isTimed(task)) {
+                calendar.occupy(task);
+                previous = task;
+            }
+        }
+        prioritizedTasks.addAll(new SortedListSet<>(sorted, taskComparatorStartTime));
+    }
+
+    protected void removePrioritized(Task task) {
+        if (prioritizedTasks.remove(task)) {
+            timeIndex.remove(task);
+            if (TimeIntervalIndex.isTimed(task)) {
+                calendar.release(task);
+            }
+        }
+    }
+
+    // Замена задачи в индексах с проверкой пересечений; при ошибке прежняя задача остаётся на месте
+    private void replacePrioritized(Task oldTask, Task newTask) {
+        removePrioritized(oldTask);
+        try {
+            validateCorrectTaskTime(newTask);
+        } catch (ManagerSaveException ex) {
+            addPrioritized(oldTask);
+            throw ex;
         }
+        addPrioritized(newTask);
+    }
+
+    private void clearAllHistory(IntObjectHashMap<? extends Task> idToTask) {
+        idToTask.forEachKey(historyManager::remove);
     }
 }
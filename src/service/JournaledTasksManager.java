@@ -0,0 +1,96 @@
+package service;
+
+import model.Task;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Менеджер с журналом: операция дописывает в журнал только изменённые задачи и просмотры,
+ * а полный снимок периодически пишется в фоне (см. {@link TaskJournal}). Снимок и журнал хранятся в двоичном формате
+ * {@link BinaryTaskFormatter}; CSV в формате {@link FileBackedTasksManager} используется для импорта и экспорта.
+ * Операции завершаются в памяти, запись на диск идёт группами в отдельном потоке по политике {@link Durability};
+ * дождаться сохранения можно через {@link #whenDurable()}.
+ */
+public class JournaledTasksManager extends FileBackedTasksManager {
+    private final TaskJournal journal;
+
+    private JournaledTasksManager(Path path, Durability durability, int compactionThreshold) {
+        super(path);
+        journal = new TaskJournal(path, compactionThreshold, durability);
+    }
+
+    public static JournaledTasksManager open(Path path) {
+        return open(path, Managers.JOURNAL_DURABILITY, Managers.JOURNAL_COMPACTION_THRESHOLD);
+    }
+
+    public static JournaledTasksManager open(Path path, Durability durability) {
+        return open(path, durability, Managers.JOURNAL_COMPACTION_THRESHOLD);
+    }
+
+    public static JournaledTasksManager open(Path path, int compactionThreshold) {
+        return open(path, Managers.JOURNAL_DURABILITY, compactionThreshold);
+    }
+
+    // Восстанавливает состояние из снимка и журналов и продолжает журнал
+    public static JournaledTasksManager open(Path path, Durability durability, int compactionThreshold) {
+        JournaledTasksManager manager = new JournaledTasksManager(path, durability, compactionThreshold);
+        manager.restore(manager.journal.restore());
+        manager.getEventBus().subscribe(manager.journal::append);
+        manager.journal.start();
+        return manager;
+    }
+
+    // Завершается, когда все выполненные до вызова операции сохранены согласно политике
+    public CompletableFuture<Void> whenDurable() {
+        return journal.whenDurable();
+    }
+
+    // Дописывает журнал и дожидается записи снимка, если она идёт
+    public void close() {
+        journal.close();
+    }
+
+    // Импорт из CSV: файл становится новым снимком, прежние снимок и журнал заменяются
+    public static JournaledTasksManager importCsv(Path csv, Path path) {
+        FileBackedTasksManager source = FileBackedTasksManager.loadFromFile(csv);
+        TaskJournal journal = new TaskJournal(path, Managers.JOURNAL_COMPACTION_THRESHOLD,
+                Managers.JOURNAL_DURABILITY);
+        journal.replace(source.snapshot(), source.getHistory(), source.id);
+        journal.close();
+        return open(path);
+    }
+
+    // Экспорт в формате FileBackedTasksManager
+    public void exportCsv(Path csv) {
+        try {
+            Files.writeString(csv, toCsv(snapshot(), historyManager.getHistory()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи");
+        }
+    }
+
+    private void restore(TaskJournal.State state) {
+        state.forEachTask(this::load);
+        finishLoading(state.getHistory(), state.getLastId());
+    }
+
+    // Записи операции уже в очереди журнала через подписку на события — остаётся передать их потоку записи
+    @Override
+    protected void save() {
+        if (journal.commit()) {
+            journal.compact(snapshot(), historyManager.getHistory(), id);
+        }
+    }
+
+    @Override
+    protected void saveView(Task viewed) {
+        if (viewed != null) {
+            journal.appendView(viewed.getId());
+        }
+        save();
+    }
+}
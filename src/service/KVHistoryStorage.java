@@ -0,0 +1,31 @@
+package service;
+
+import java.net.URI;
+
+// Истории пользователей на KV-сервере под ключами history-<пользователь>
+public class KVHistoryStorage implements HistoryStorage {
+    private final KVTaskClient client;
+
+    public KVHistoryStorage(URI url) {
+        client = new KVTaskClient(url);
+    }
+
+    @Override
+    public void save(String userId, int[] taskIds) {
+        client.put(keyOf(userId), UserHistoryStore.idsToString(taskIds));
+    }
+
+    @Override
+    public int[] load(String userId) {
+        try {
+            return UserHistoryStore.idsFromString(client.load(keyOf(userId)));
+        } catch (KVTaskClient.KVTaskClientException ex) {
+            // истории этого пользователя ещё нет на сервере
+            return new int[0];
+        }
+    }
+
+    private static String keyOf(String userId) {
+        return "history-" + UserHistoryStore.encodeUserId(userId);
+    }
+}
@@ -1,10 +1,25 @@
 package service;
 
 import java.net.URI;
+import java.nio.file.Paths;
+import java.time.Duration;
 
 import static server.KVServer.PORT;
 
 public final class Managers {
+    // Размер истории просмотров по умолчанию
+    public static final int HISTORY_CAPACITY = 1000;
+    // Истории пользователей: размер, число историй в памяти и простой, после которого история выгружается
+    public static final int USER_HISTORY_CAPACITY = 100;
+    public static final int MAX_RESIDENT_USERS = 1000;
+    public static final Duration USER_HISTORY_IDLE_TIMEOUT = Duration.ofMinutes(10);
+    // Сколько самых просматриваемых задач отслеживается
+    public static final int HOT_TASKS_CAPACITY = 100;
+    // Сколько записей журнала накапливается до записи нового снимка
+    public static final int JOURNAL_COMPACTION_THRESHOLD = 10_000;
+    // Журнал сбрасывается на диск после каждой операции, группами
+    public static final Durability JOURNAL_DURABILITY = Durability.everyOperation();
+
     private Managers() {
     }
 
@@ -13,6 +28,15 @@ public final class Managers {
     }
 
     public static HistoryManager getDefaultHistory() {
-        return new InMemoryHistoryManager();
+        return new InMemoryHistoryManager(HISTORY_CAPACITY);
+    }
+
+    public static HistoryManager getDefaultHistory(int capacity) {
+        return new InMemoryHistoryManager(capacity);
+    }
+
+    public static UserHistoryStore getDefaultUserHistories() {
+        return new UserHistoryStore(new FileHistoryStorage(Paths.get("user-history")), USER_HISTORY_CAPACITY,
+                MAX_RESIDENT_USERS, USER_HISTORY_IDLE_TIMEOUT);
     }
 }
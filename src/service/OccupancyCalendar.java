@@ -0,0 +1,119 @@
+package service;
+
+import model.Task;
+import util.IntObjectHashMap;
+
+/**
+ * Календарь занятости: день от эпохи -> битовая карта минут дня. Задача занимает минуты с начала
+ * по окончание включительно (касание концами — тоже пересечение). Проверка и отметка задачи
+ * затрагивают только дни, на которые она приходится, и не зависят от числа задач.
+ * Полностью занятый день хранится общим маркером без отдельной карты.
+ */
+class OccupancyCalendar {
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int WORDS_PER_DAY = (MINUTES_PER_DAY + Long.SIZE - 1) / Long.SIZE;
+    private static final long[] FULL_DAY = new long[0];
+
+    private final IntObjectHashMap<long[]> days = new IntObjectHashMap<>();
+
+    boolean isFree(Task task) {
+        long start = startMinute(task);
+        long end = start + task.getDuration().toMinutes();
+        for (long day = Math.floorDiv(start, MINUTES_PER_DAY); day <= Math.floorDiv(end, MINUTES_PER_DAY); day++) {
+            long[] minutes = days.get((int) day);
+            if (minutes == null) {
+                continue;
+            }
+            if (minutes == FULL_DAY || intersects(minutes, from(start, day), to(end, day))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Задача должна быть свободна по календарю: отмеченные минуты принадлежат ровно одной задаче
+    void occupy(Task task) {
+        long start = startMinute(task);
+        long end = start + task.getDuration().toMinutes();
+        for (long day = Math.floorDiv(start, MINUTES_PER_DAY); day <= Math.floorDiv(end, MINUTES_PER_DAY); day++) {
+            int from = from(start, day);
+            int to = to(end, day);
+            if (from == 0 && to == MINUTES_PER_DAY - 1) {
+                days.put((int) day, FULL_DAY);
+                continue;
+            }
+            long[] minutes = days.get((int) day);
+            if (minutes == null) {
+                minutes = new long[WORDS_PER_DAY];
+                days.put((int) day, minutes);
+            }
+            setRange(minutes, from, to, true);
+        }
+    }
+
+    void release(Task task) {
+        long start = startMinute(task);
+        long end = start + task.getDuration().toMinutes();
+        for (long day = Math.floorDiv(start, MINUTES_PER_DAY); day <= Math.floorDiv(end, MINUTES_PER_DAY); day++) {
+            long[] minutes = days.get((int) day);
+            if (minutes == null) {
+                continue;
+            }
+            if (minutes == FULL_DAY) {
+                days.remove((int) day);
+                continue;
+            }
+            setRange(minutes, from(start, day), to(end, day), false);
+            if (isEmpty(minutes)) {
+                days.remove((int) day);
+            }
+        }
+    }
+
+    private static long startMinute(Task task) {
+        return task.getStartTime().toEpochDay() * MINUTES_PER_DAY;
+    }
+
+    private static int from(long start, long day) {
+        return (int) Math.max(start - day * MINUTES_PER_DAY, 0);
+    }
+
+    private static int to(long end, long day) {
+        return (int) Math.min(end - day * MINUTES_PER_DAY, MINUTES_PER_DAY - 1);
+    }
+
+    private static boolean intersects(long[] minutes, int from, int to) {
+        for (int word = from / Long.SIZE; word <= to / Long.SIZE; word++) {
+            if ((minutes[word] & mask(word, from, to)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void setRange(long[] minutes, int from, int to, boolean isOccupied) {
+        for (int word = from / Long.SIZE; word <= to / Long.SIZE; word++) {
+            if (isOccupied) {
+                minutes[word] |= mask(word, from, to);
+            } else {
+                minutes[word] &= ~mask(word, from, to);
+            }
+        }
+    }
+
+    // Биты слова word, попадающие в диапазон минут [from, to]
+    private static long mask(int word, int from, int to) {
+        int low = Math.max(from - word * Long.SIZE, 0);
+        int high = Math.min(to - word * Long.SIZE, Long.SIZE - 1);
+        return (-1L >>> (Long.SIZE - 1 - high)) & (-1L << low);
+    }
+
+    private static boolean isEmpty(long[] minutes) {
+        for (long word : minutes) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
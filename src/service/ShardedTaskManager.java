@@ -0,0 +1,788 @@
+package service;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import model.TaskStatus;
+import model.TaskType;
+import util.IntHashSet;
+import util.VersionedCache;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Менеджер, разделённый на шарды: задача и эпик вместе со своими подзадачами хранятся в шарде с номером id % N.
+ * Каждый шард — обычный InMemoryTaskManager, с которым работает только его однопоточный исполнитель,
+ * поэтому изменения в разных шардах идут параллельно. Координатор отвечает за то, чего не видит отдельный шард:
+ * общий счётчик идентификаторов, общий календарь занятости (интервал резервируется до изменения шарда
+ * и освобождается, если шард изменение отклонил), общую историю и слияние списков со всех шардов.
+ * Пакеты изменений и перенос подзадачи в эпик другого шарда выполняются при остановленных шардах:
+ * пакет применяется целиком или не применяется, а идентификаторы выдаются по порядку операций.
+ * Сводные списки собираются с шардов по очереди и не образуют согласованного среза.
+ */
+public class ShardedTaskManager implements TaskManager {
+    private static final Comparator<Task> BY_ID = Comparator.comparingInt(Task::getId);
+    private static final Comparator<Task> BY_START_TIME = Comparator.comparingLong(Task::getStartSortKey);
+
+    private final AtomicInteger lastId = new AtomicInteger();
+    // Новые id выдаются под общей блокировкой, пакет берёт эксклюзивную: пока он применяется, id не выдаются
+    private final ReadWriteLock idLock = new ReentrantReadWriteLock();
+    // Шард подзадачи определяется её эпиком, а не собственным id
+    private final Map<Integer, Shard> subtaskShards = new ConcurrentHashMap<>();
+    private final Schedule schedule = new Schedule();
+    private final HistoryManager history = new SynchronizedHistoryManager(Managers.getDefaultHistory());
+    // Подзадачи, которые пакет переносит между шардами: удаление из прежнего шарда не убирает их из истории
+    private final IntHashSet movingSubtasks = new IntHashSet();
+    private final HistoryManager shardHistory = new HistoryManager() {
+        @Override
+        public void add(Task task) {
+            history.add(task);
+        }
+
+        @Override
+        public void remove(int id) {
+            if (!movingSubtasks.contains(id)) {
+                history.remove(id);
+            }
+        }
+
+        @Override
+        public List<Task> getHistory() {
+            return history.getHistory();
+        }
+
+        @Override
+        public int getCapacity() {
+            return history.getCapacity();
+        }
+
+        @Override
+        public long getEvictedCount() {
+            return history.getEvictedCount();
+        }
+    };
+    private final Shard[] shards;
+    // Сводные списки пересобираются, только если изменился хотя бы один шард
+    private final VersionedCache<List<Task>> tasksView = new VersionedCache<>();
+    private final VersionedCache<List<Epic>> epicsView = new VersionedCache<>();
+    private final VersionedCache<List<Subtask>> subtasksView = new VersionedCache<>();
+    private final VersionedCache<List<Task>> prioritizedView = new VersionedCache<>();
+
+    public ShardedTaskManager(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Число шардов должно быть положительным");
+        }
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
+
+    // Останавливает потоки шардов; после этого менеджером пользоваться нельзя
+    public void shutdown() {
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+    }
+
+    // Методы получения списка всех задач
+    @Override
+    public ArrayList<Task> getListOfAllTasks() {
+        return getTasksView().stream().map(Task::new).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    @Override
+    public ArrayList<Epic> getListOfAllEpics() {
+        return getEpicsView().stream().map(Epic::new).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    @Override
+    public ArrayList<Subtask> getListOfAllSubtasks() {
+        return getSubtasksView().stream().map(Subtask::new).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    // Удаление всех задач: каждый шард очищается отдельно
+    @Override
+    public void deleteAllTasks() {
+        callAll(shard -> {
+            List<Task> oldTasks = timed(shard.getTasksView());
+            shard.deleteAllTasks();
+            schedule.replace(oldTasks, List.of());
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAllEpics() {
+        callAll(shard -> {
+            List<Task> oldTasks = timed(shard.getSubtasksView());
+            shard.deleteAllEpics();
+            schedule.replace(oldTasks, List.of());
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAllSubtasks() {
+        callAll(shard -> {
+            List<Task> oldTasks = timed(shard.getSubtasksView());
+            shard.deleteAllSubtasks();
+            schedule.replace(oldTasks, List.of());
+            return null;
+        });
+    }
+
+    // Получение по ID
+    @Override
+    public Task getTaskById(int id) {
+        Shard shard = shardOf(id);
+        return call(shard, () -> shard.getTaskById(id));
+    }
+
+    @Override
+    public Epic getEpicById(int id) {
+        Shard shard = shardOf(id);
+        return call(shard, () -> shard.getEpicById(id));
+    }
+
+    @Override
+    public Subtask getSubtaskById(int id) {
+        Shard shard = subtaskShard(id);
+        return call(shard, () -> shard.getSubtaskById(id));
+    }
+
+    // Создание: шард новой задачи или эпика определяется выданным id, подзадачи — её эпиком
+    @Override
+    public void createTask(Task task) {
+        if (task == null) {
+            return;
+        }
+        List<Task> newTasks = timed(List.of(task));
+        schedule.replace(List.of(), newTasks);
+        try {
+            int id = newId();
+            Shard shard = shardOf(id);
+            run(shard, () -> shard.createWithId(id, () -> shard.createTask(task)));
+        } catch (RuntimeException ex) {
+            schedule.replace(newTasks, List.of());
+            throw ex;
+        }
+    }
+
+    @Override
+    public void createEpic(Epic epic) {
+        if (epic == null) {
+            return;
+        }
+        int id = newId();
+        Shard shard = shardOf(id);
+        run(shard, () -> shard.createWithId(id, () -> shard.createEpic(epic)));
+    }
+
+    @Override
+    public void createSubtask(Subtask subtask) {
+        if (subtask == null) {
+            return;
+        }
+        Shard shard = shardOf(subtask.getEpicId());
+        run(shard, () -> {
+            if (shard.epics.containsKey(subtask.getEpicId())) {
+                change(List.of(), timed(List.of(subtask)), () -> shard.createSubtask(subtask));
+            } else {
+                shard.createSubtask(subtask);
+            }
+        });
+    }
+
+    // Обновление
+    @Override
+    public void updateTask(Task task) {
+        Shard shard = task == null ? shards[0] : shardOf(task.getId());
+        run(shard, () -> {
+            Task oldTask = task == null ? null : shard.tasks.get(task.getId());
+            if (oldTask != null) {
+                change(timed(List.of(oldTask)), timed(List.of(task)), () -> shard.updateTask(task));
+            } else {
+                shard.updateTask(task);
+            }
+        });
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        Shard shard = epic == null ? shards[0] : shardOf(epic.getId());
+        run(shard, () -> shard.updateEpic(epic));
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        if (subtask == null) {
+            run(shards[0], () -> shards[0].updateSubtask(null));
+            return;
+        }
+        Shard source = subtaskShards.get(subtask.getId());
+        Shard shard = shardOf(subtask.getEpicId());
+        if (source != null && source != shard) {
+            // эпик в другом шарде: подзадача переносится вместе с ним
+            applyBatch(List.of(BatchOperation.update(subtask)));
+            return;
+        }
+        run(shard, () -> {
+            Subtask oldSubtask = shard.subtasks.get(subtask.getId());
+            if (oldSubtask != null && shard.epics.containsKey(subtask.getEpicId())) {
+                change(timed(List.of(oldSubtask)), timed(List.of(subtask)), () -> shard.updateSubtask(subtask));
+            } else {
+                shard.updateSubtask(subtask);
+            }
+        });
+    }
+
+    // Получение списка всех подзадач определенного эпика
+    @Override
+    public ArrayList<Subtask> getListOfAllEpicSubtasks(Epic epic) {
+        if (epic == null) {
+            return new ArrayList<>();
+        }
+        Shard shard = shardOf(epic.getId());
+        return call(shard, () -> shard.getListOfAllEpicSubtasks(epic));
+    }
+
+    // Удаление по идентификатору
+    @Override
+    public void deleteTaskById(int id) {
+        Shard shard = shardOf(id);
+        run(shard, () -> {
+            List<Task> oldTasks = timed(Collections.singletonList(shard.tasks.get(id)));
+            shard.deleteTaskById(id);
+            schedule.replace(oldTasks, List.of());
+        });
+    }
+
+    @Override
+    public void deleteEpicById(int id) {
+        Shard shard = shardOf(id);
+        run(shard, () -> {
+            List<Task> oldTasks = timed(shard.getEpicSubtasksView(id));
+            shard.deleteEpicById(id);
+            schedule.replace(oldTasks, List.of());
+        });
+    }
+
+    @Override
+    public void deleteSubtaskById(int id) {
+        Shard shard = subtaskShard(id);
+        run(shard, () -> {
+            List<Task> oldTasks = timed(Collections.singletonList(shard.subtasks.get(id)));
+            shard.deleteSubtaskById(id);
+            schedule.replace(oldTasks, List.of());
+        });
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return new ArrayList<>(history.getHistory());
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return new ArrayList<>(getPrioritizedTasksView());
+    }
+
+    // Представления только для чтения
+    @Override
+    public List<Task> getTasksView() {
+        return tasksView.get(getVersion(), () ->
+                Collections.unmodifiableList(merge(Shard::getTasksView, BY_ID, Integer.MAX_VALUE)));
+    }
+
+    @Override
+    public List<Epic> getEpicsView() {
+        return epicsView.get(getVersion(), () ->
+                Collections.unmodifiableList(merge(Shard::getEpicsView, BY_ID, Integer.MAX_VALUE)));
+    }
+
+    @Override
+    public List<Subtask> getSubtasksView() {
+        return subtasksView.get(getVersion(), () ->
+                Collections.unmodifiableList(merge(Shard::getSubtasksView, BY_ID, Integer.MAX_VALUE)));
+    }
+
+    @Override
+    public List<Subtask> getEpicSubtasksView(int epicId) {
+        Shard shard = shardOf(epicId);
+        return call(shard, () -> shard.getEpicSubtasksView(epicId));
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasksView() {
+        return prioritizedView.get(getVersion(), () ->
+                Collections.unmodifiableList(merge(Shard::getPrioritizedTasksView, BY_START_TIME, Integer.MAX_VALUE)));
+    }
+
+    @Override
+    public Task getTaskView(int id) {
+        Shard shard = shardOf(id);
+        return call(shard, () -> shard.getTaskView(id));
+    }
+
+    @Override
+    public Epic getEpicView(int id) {
+        Shard shard = shardOf(id);
+        return call(shard, () -> shard.getEpicView(id));
+    }
+
+    @Override
+    public Subtask getSubtaskView(int id) {
+        Shard shard = subtaskShard(id);
+        return call(shard, () -> shard.getSubtaskView(id));
+    }
+
+    // Постраничное получение: каждый шард отдаёт не больше limit элементов после курсора
+    @Override
+    public List<Task> getTasksPage(int afterId, int limit) {
+        return Collections.unmodifiableList(merge(shard -> shard.getTasksPage(afterId, limit), BY_ID, limit));
+    }
+
+    @Override
+    public List<Epic> getEpicsPage(int afterId, int limit) {
+        return Collections.unmodifiableList(merge(shard -> shard.getEpicsPage(afterId, limit), BY_ID, limit));
+    }
+
+    @Override
+    public List<Subtask> getSubtasksPage(int afterId, int limit) {
+        return Collections.unmodifiableList(merge(shard -> shard.getSubtasksPage(afterId, limit), BY_ID, limit));
+    }
+
+    // Выборка по статусу
+    @Override
+    public List<Task> getByStatus(TaskType type, TaskStatus status) {
+        return Collections.unmodifiableList(merge(shard -> shard.getByStatus(type, status), BY_ID,
+                Integer.MAX_VALUE));
+    }
+
+    @Override
+    public int countByStatus(TaskType type, TaskStatus status) {
+        int count = 0;
+        for (int shardCount : callAll(shard -> shard.countByStatus(type, status))) {
+            count += shardCount;
+        }
+        return count;
+    }
+
+    // Задача просматривается только в своём шарде, поэтому списки шардов сливаются по их оценкам просмотров
+    @Override
+    public List<Task> getHotTasks(int limit) {
+        List<Map.Entry<Task, Integer>> hotTasks = new ArrayList<>();
+        for (List<Map.Entry<Task, Integer>> part : callAll(shard -> {
+            List<Map.Entry<Task, Integer>> counted = new ArrayList<>();
+            for (Task task : shard.getHotTasks(limit)) {
+                counted.add(Map.entry(task, shard.getViewCount(task.getId())));
+            }
+            return counted;
+        })) {
+            hotTasks.addAll(part);
+        }
+        hotTasks.sort(Map.Entry.<Task, Integer>comparingByValue().reversed()
+                .thenComparing(entry -> entry.getKey().getId()));
+        List<Task> result = new ArrayList<>();
+        for (int i = 0; i < Math.min(Math.max(limit, 0), hotTasks.size()); i++) {
+            result.add(hotTasks.get(i).getKey());
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public void recordView(int id) {
+        Shard shard = subtaskShard(id);
+        run(shard, () -> shard.recordView(id));
+    }
+
+    @Override
+    public List<Task> search(String query, int limit) {
+        return Collections.unmodifiableList(merge(shard -> shard.search(query, limit), BY_ID, limit));
+    }
+
+    // Выборка по времени
+    @Override
+    public List<Task> getTasksBetween(LocalDate from, LocalDate to) {
+        return Collections.unmodifiableList(merge(shard -> shard.getTasksBetween(from, to), BY_START_TIME,
+                Integer.MAX_VALUE));
+    }
+
+    @Override
+    public List<Task> getTasksOverlapping(LocalDate from, LocalDate to) {
+        return Collections.unmodifiableList(merge(shard -> shard.getTasksOverlapping(from, to), BY_START_TIME,
+                Integer.MAX_VALUE));
+    }
+
+    @Override
+    public LocalDate findEarliestSlot(Duration duration, LocalDate notBefore) {
+        if (duration.isNegative()) {
+            throw new IllegalArgumentException("Длительность не может быть отрицательной");
+        }
+        // EPOCH означает «без времени», поэтому такой датой слот быть не может
+        if (notBefore.isEqual(LocalDate.EPOCH)) {
+            notBefore = notBefore.plusDays(1);
+        }
+        return schedule.findEarliestSlot(duration, notBefore);
+    }
+
+    // Пакетные изменения
+    @Override
+    public void createAll(List<? extends Task> tasks) {
+        List<BatchOperation> operations = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            operations.add(BatchOperation.create(task));
+        }
+        applyBatch(operations);
+    }
+
+    // Версии шардов только растут, поэтому их сумма тоже растёт при любом изменении
+    @Override
+    public long getVersion() {
+        long version = 0;
+        for (long shardVersion : callAll(Shard::getVersion)) {
+            version += shardVersion;
+        }
+        return version;
+    }
+
+    // Снимки всех шардов берутся, пока шарды остановлены, поэтому вместе они согласованы
+    @Override
+    public TaskManagerSnapshot snapshot() {
+        List<TaskManagerSnapshot> parts = new ArrayList<>(shards.length);
+        exclusive(() -> {
+            for (Shard shard : shards) {
+                parts.add(shard.snapshot());
+            }
+        });
+        return TaskManagerSnapshot.combine(parts);
+    }
+
+    // Операции пакета раскладываются по шардам, каждый шард проверяет свою часть, координатор — время по всем шардам;
+    // только после этого части применяются
+    @Override
+    public void applyBatch(List<BatchOperation> operations) {
+        exclusive(() -> {
+            Map<Shard, List<BatchOperation>> shardOperations = new LinkedHashMap<>();
+            Map<Shard, int[]> shardIds = new LinkedHashMap<>();
+            IntHashSet moved = new IntHashSet();
+            int nextId = lastId.get();
+            for (BatchOperation operation : operations) {
+                Task task = operation.getTask();
+                switch (operation.getKind()) {
+                    case CREATE:
+                        if (task == null) {
+                            continue;
+                        }
+                        nextId++;
+                        Shard shard = task.getType() == TaskType.SUBTASK
+                                ? shardOf(((Subtask) task).getEpicId()) : shardOf(nextId);
+                        addOperation(shardOperations, shardIds, shard, operation, nextId);
+                        break;
+                    case UPDATE:
+                        if (task == null) {
+                            throw new ManagerSaveException("Получена нулевая задача");
+                        }
+                        if (task.getType() != TaskType.SUBTASK) {
+                            addOperation(shardOperations, shardIds, shardOf(task.getId()), operation, 0);
+                            break;
+                        }
+                        Shard source = subtaskShards.get(task.getId());
+                        Shard target = shardOf(((Subtask) task).getEpicId());
+                        if (source == null || source == target) {
+                            addOperation(shardOperations, shardIds, target, operation, 0);
+                        } else {
+                            // перенос в эпик другого шарда: удаление из прежнего шарда и создание с тем же id
+                            addOperation(shardOperations, shardIds, source,
+                                    BatchOperation.delete(TaskType.SUBTASK, task.getId()), 0);
+                            addOperation(shardOperations, shardIds, target, BatchOperation.create(task), task.getId());
+                            moved.add(task.getId());
+                        }
+                        break;
+                    case DELETE:
+                        addOperation(shardOperations, shardIds, operation.getType() == TaskType.SUBTASK
+                                ? subtaskShard(operation.getId()) : shardOf(operation.getId()), operation, 0);
+                        break;
+                }
+            }
+
+            Map<Shard, BatchPlan> plans = new LinkedHashMap<>();
+            for (Map.Entry<Shard, List<BatchOperation>> entry : shardOperations.entrySet()) {
+                BatchPlan plan = new BatchPlan(lastId.get(), shardIds.get(entry.getKey()));
+                entry.getKey().planBatch(plan, entry.getValue());
+                plans.put(entry.getKey(), plan);
+            }
+            List<Task> oldTasks = new ArrayList<>();
+            List<Task> newTasks = new ArrayList<>();
+            for (Map.Entry<Shard, BatchPlan> entry : plans.entrySet()) {
+                Shard shard = entry.getKey();
+                BatchPlan plan = entry.getValue();
+                plan.changed.forEachKey(id -> oldTasks.addAll(timed(Collections.singletonList(shard.stored(id)))));
+                plan.removed.forEach(id -> oldTasks.addAll(timed(Collections.singletonList(shard.stored(id)))));
+                newTasks.addAll(timed(plan.changed.values()));
+            }
+            schedule.replace(oldTasks, newTasks);
+
+            moved.forEach(movingSubtasks::add);
+            try {
+                plans.forEach(Shard::commitBatch);
+            } finally {
+                movingSubtasks.clear();
+            }
+            lastId.set(nextId);
+        });
+    }
+
+    private static void addOperation(Map<Shard, List<BatchOperation>> shardOperations, Map<Shard, int[]> shardIds,
+                                     Shard shard, BatchOperation operation, int createdId) {
+        shardOperations.computeIfAbsent(shard, key -> new ArrayList<>()).add(operation);
+        if (operation.getKind() == BatchOperation.Kind.CREATE) {
+            int[] ids = shardIds.getOrDefault(shard, new int[0]);
+            ids = Arrays.copyOf(ids, ids.length + 1);
+            ids[ids.length - 1] = createdId;
+            shardIds.put(shard, ids);
+        }
+    }
+
+    private Shard shardOf(int id) {
+        return shards[Math.floorMod(id, shards.length)];
+    }
+
+    private Shard subtaskShard(int id) {
+        Shard shard = subtaskShards.get(id);
+        return shard == null ? shardOf(id) : shard;
+    }
+
+    private int newId() {
+        idLock.readLock().lock();
+        try {
+            return lastId.incrementAndGet();
+        } finally {
+            idLock.readLock().unlock();
+        }
+    }
+
+    // Изменение шарда с резервированием времени в общем календаре; выполняется в потоке шарда
+    private void change(List<Task> oldTasks, List<Task> newTasks, Runnable action) {
+        schedule.replace(oldTasks, newTasks);
+        try {
+            action.run();
+        } catch (RuntimeException ex) {
+            schedule.replace(newTasks, oldTasks);
+            throw ex;
+        }
+    }
+
+    // Задачи и подзадачи со временем — только они занимают календарь
+    private static List<Task> timed(Collection<? extends Task> tasks) {
+        List<Task> result = new ArrayList<>();
+        for (Task task : tasks) {
+            if (task != null && task.getType() != TaskType.EPIC && TimeIntervalIndex.isTimed(task)) {
+                result.add(task);
+            }
+        }
+        return result;
+    }
+
+    // Слияние ответов всех шардов в заданном порядке: ответы уже упорядочены, поэтому сортировка сводится к слиянию
+    private <T extends Task> ArrayList<T> merge(Function<Shard, List<T>> query, Comparator<? super T> order,
+                                                int limit) {
+        ArrayList<T> result = new ArrayList<>();
+        for (List<T> part : callAll(query)) {
+            result.addAll(part);
+        }
+        result.sort(order);
+        int size = Math.max(limit, 0);
+        return result.size() > size ? new ArrayList<>(result.subList(0, size)) : result;
+    }
+
+    private <R> R call(Shard shard, Callable<R> job) {
+        return await(shard.executor.submit(job));
+    }
+
+    private void run(Shard shard, Runnable job) {
+        call(shard, () -> {
+            job.run();
+            return null;
+        });
+    }
+
+    // Запрос выполняется всеми шардами параллельно
+    private <R> List<R> callAll(Function<Shard, R> job) {
+        List<Future<R>> futures = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            futures.add(shard.executor.submit(() -> job.apply(shard)));
+        }
+        List<R> results = new ArrayList<>(shards.length);
+        for (Future<R> future : futures) {
+            results.add(await(future));
+        }
+        return results;
+    }
+
+    // Действие выполняется, когда все шарды закончили начатые задания и ждут его завершения
+    private void exclusive(Runnable action) {
+        idLock.writeLock().lock();
+        CountDownLatch parked = new CountDownLatch(shards.length);
+        CountDownLatch resumed = new CountDownLatch(1);
+        try {
+            for (Shard shard : shards) {
+                shard.executor.execute(() -> {
+                    parked.countDown();
+                    try {
+                        resumed.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            parked.await();
+            action.run();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание шардов прервано", ex);
+        } finally {
+            resumed.countDown();
+            idLock.writeLock().unlock();
+        }
+    }
+
+    private static <R> R await(Future<R> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание шарда прервано", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private class Shard extends InMemoryTaskManager {
+        final ExecutorService executor;
+        // id, заранее выданный координатором создаваемой задаче; 0 — выдать новый
+        private int assignedId;
+
+        Shard(int index) {
+            super(shardHistory);
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "shard-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        void createWithId(int id, Runnable create) {
+            assignedId = id;
+            try {
+                create.run();
+            } finally {
+                assignedId = 0;
+            }
+        }
+
+        Task stored(int id) {
+            Task task = tasks.get(id);
+            return task == null ? subtasks.get(id) : task;
+        }
+
+        @Override
+        protected int nextId() {
+            return assignedId != 0 ? assignedId : lastId.incrementAndGet();
+        }
+
+        // Маршруты подзадач меняются вместе с хранилищем шарда
+        @Override
+        protected void storeSubtask(Subtask subtask) {
+            super.storeSubtask(subtask);
+            subtaskShards.put(subtask.getId(), this);
+        }
+
+        @Override
+        protected void discardSubtasks(int... sortedIds) {
+            super.discardSubtasks(sortedIds);
+            for (int id : sortedIds) {
+                subtaskShards.remove(id, this);
+            }
+        }
+
+        @Override
+        public void deleteAllEpics() {
+            subtaskIds.forEach(id -> subtaskShards.remove(id, this));
+            super.deleteAllEpics();
+        }
+
+        @Override
+        public void deleteAllSubtasks() {
+            subtaskIds.forEach(id -> subtaskShards.remove(id, this));
+            super.deleteAllSubtasks();
+        }
+    }
+
+    // Общий календарь занятости всех шардов и свободные промежутки между интервалами для поиска слота
+    private static class Schedule {
+        private final OccupancyCalendar calendar = new OccupancyCalendar();
+        private final TimeIntervalIndex intervals = new TimeIntervalIndex();
+
+        // Замена интервалов oldTasks на интервалы newTasks; при пересечении календарь не меняется
+        synchronized void replace(List<Task> oldTasks, List<Task> newTasks) {
+            oldTasks.forEach(this::release);
+            for (int i = 0; i < newTasks.size(); i++) {
+                Task task = newTasks.get(i);
+                if (!calendar.isFree(task)) {
+                    newTasks.subList(0, i).forEach(this::release);
+                    oldTasks.forEach(this::occupy);
+                    throw new ManagerSaveException("У задачи" + task + " есть пересечение во времени");
+                }
+                occupy(task);
+            }
+        }
+
+        synchronized LocalDate findEarliestSlot(Duration duration, LocalDate notBefore) {
+            return intervals.findEarliestSlot(duration, notBefore);
+        }
+
+        private void occupy(Task task) {
+            calendar.occupy(task);
+            intervals.add(interval(task));
+        }
+
+        private void release(Task task) {
+            calendar.release(task);
+            intervals.remove(interval(task));
+        }
+
+        // В индексе хранится только интервал: копии с одинаковым интервалом равны между собой
+        private static Task interval(Task task) {
+            return new Task("", "", TaskStatus.NEW, task.getStartTime(), task.getDuration());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package service;
+
+import model.TaskStatus;
+import model.TaskType;
+import util.IntHashSet;
+
+/**
+ * Вторичный индекс идентификаторов по типу и статусу задачи: количество — O(1),
+ * выборка — O(k log k) для k найденных задач. Статус эпика меняется при пересчёте по подзадачам,
+ * поэтому менеджер переносит эпик между множествами в refreshEpic.
+ */
+class StatusIndex {
+    private final IntHashSet[][] ids = new IntHashSet[TaskType.values().length][TaskStatus.values().length];
+
+    StatusIndex() {
+        for (IntHashSet[] byStatus : ids) {
+            for (int i = 0; i < byStatus.length; i++) {
+                byStatus[i] = new IntHashSet();
+            }
+        }
+    }
+
+    void add(TaskType type, TaskStatus status, int id) {
+        ids[type.ordinal()][status.ordinal()].add(id);
+    }
+
+    void remove(TaskType type, TaskStatus status, int id) {
+        ids[type.ordinal()][status.ordinal()].remove(id);
+    }
+
+    void clear(TaskType type) {
+        for (IntHashSet statusIds : ids[type.ordinal()]) {
+            statusIds.clear();
+        }
+    }
+
+    int count(TaskType type, TaskStatus status) {
+        return ids[type.ordinal()][status.ordinal()].size();
+    }
+
+    // Идентификаторы по возрастанию
+    int[] ids(TaskType type, TaskStatus status) {
+        return ids[type.ordinal()][status.ordinal()].toSortedArray();
+    }
+}
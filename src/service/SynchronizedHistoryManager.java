@@ -0,0 +1,39 @@
+package service;
+
+import model.Task;
+
+import java.util.List;
+
+// История просмотров, общая для нескольких потоков
+class SynchronizedHistoryManager implements HistoryManager {
+    private final HistoryManager historyManager;
+
+    SynchronizedHistoryManager(HistoryManager historyManager) {
+        this.historyManager = historyManager;
+    }
+
+    @Override
+    public synchronized void add(Task task) {
+        historyManager.add(task);
+    }
+
+    @Override
+    public synchronized void remove(int id) {
+        historyManager.remove(id);
+    }
+
+    @Override
+    public synchronized List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+
+    @Override
+    public int getCapacity() {
+        return historyManager.getCapacity();
+    }
+
+    @Override
+    public synchronized long getEvictedCount() {
+        return historyManager.getEvictedCount();
+    }
+}
@@ -0,0 +1,55 @@
+package service;
+
+import model.Task;
+import model.TaskType;
+
+/**
+ * Событие изменения хранилища. Состояния до и после — неизменяемые снимки:
+ * при создании before равен null, при удалении — after.
+ */
+public class TaskEvent {
+    public enum Kind {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Kind kind;
+    private final Task before;
+    private final Task after;
+
+    TaskEvent(Kind kind, Task before, Task after) {
+        this.kind = kind;
+        this.before = before;
+        this.after = after;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public TaskType getType() {
+        return after == null ? before.getType() : after.getType();
+    }
+
+    public int getId() {
+        return after == null ? before.getId() : after.getId();
+    }
+
+    public Task getBefore() {
+        return before;
+    }
+
+    public Task getAfter() {
+        return after;
+    }
+
+    @Override
+    public String toString() {
+        return "TaskEvent{" +
+                "kind=" + kind +
+                ", type=" + getType() +
+                ", id=" + getId() +
+                '}';
+    }
+}
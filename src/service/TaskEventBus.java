@@ -0,0 +1,149 @@
+package service;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Шина событий изменения задач. События операции рассылаются после того, как она полностью применена.
+ * Синхронные подписчики вызываются в потоке, изменившем менеджер: ошибка одного подписчика не мешает
+ * доставке остальным, после рассылки первое исключение передаётся вызывающему коду. Асинхронный подписчик
+ * получает события из собственной ограниченной очереди в отдельном потоке: при переполнении событие
+ * отбрасывается и учитывается в {@link Subscription#getDroppedCount()}, поэтому медленный подписчик
+ * не тормозит запись; его исключения учитываются в {@link Subscription#getFailedCount()}.
+ */
+public class TaskEventBus {
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    public Subscription subscribe(TaskEventListener listener) {
+        Subscriber subscriber = new Subscriber(listener);
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    public Subscription subscribeAsync(TaskEventListener listener, int capacity) {
+        AsyncSubscriber subscriber = new AsyncSubscriber(listener, capacity);
+        subscribers.add(subscriber);
+        subscriber.start();
+        return subscriber;
+    }
+
+    // Позволяет не создавать снимки и события, когда их некому получать
+    public boolean hasSubscribers() {
+        return !subscribers.isEmpty();
+    }
+
+    void publish(List<TaskEvent> events) {
+        RuntimeException failure = null;
+        for (TaskEvent event : events) {
+            for (Subscriber subscriber : subscribers) {
+                try {
+                    subscriber.accept(event);
+                } catch (RuntimeException ex) {
+                    if (failure == null) {
+                        failure = ex;
+                    } else if (failure != ex) {
+                        failure.addSuppressed(ex);
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public interface Subscription {
+        void unsubscribe();
+
+        long getDroppedCount();
+
+        long getFailedCount();
+    }
+
+    private class Subscriber implements Subscription {
+        final TaskEventListener listener;
+
+        Subscriber(TaskEventListener listener) {
+            this.listener = listener;
+        }
+
+        void accept(TaskEvent event) {
+            listener.onEvent(event);
+        }
+
+        @Override
+        public void unsubscribe() {
+            subscribers.remove(this);
+        }
+
+        @Override
+        public long getDroppedCount() {
+            return 0;
+        }
+
+        @Override
+        public long getFailedCount() {
+            return 0;
+        }
+    }
+
+    private class AsyncSubscriber extends Subscriber implements Runnable {
+        private final BlockingQueue<TaskEvent> queue;
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final Thread thread = new Thread(this, "task-events");
+
+        AsyncSubscriber(TaskEventListener listener, int capacity) {
+            super(listener);
+            queue = new ArrayBlockingQueue<>(capacity);
+            thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        @Override
+        void accept(TaskEvent event) {
+            if (!queue.offer(event)) {
+                dropped.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    TaskEvent event = queue.take();
+                    try {
+                        listener.onEvent(event);
+                    } catch (RuntimeException ex) {
+                        // ошибка одного события не должна останавливать доставку остальных
+                        failed.incrementAndGet();
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void unsubscribe() {
+            super.unsubscribe();
+            thread.interrupt();
+        }
+
+        @Override
+        public long getDroppedCount() {
+            return dropped.get();
+        }
+
+        @Override
+        public long getFailedCount() {
+            return failed.get();
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package service;
+
+@FunctionalInterface
+public interface TaskEventListener {
+    void onEvent(TaskEvent event);
+}
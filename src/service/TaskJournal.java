@@ -0,0 +1,488 @@
+package service;
+
+import model.Task;
+import util.IntHashSet;
+import util.IntObjectHashMap;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Журнал изменений рядом с двоичным снимком ({@link BinaryTaskFormatter}): каждая операция дописывает
+ * в файл «снимок.log» короткие записи вместо перезаписи всего снимка. Записи хранят итоговое состояние задачи,
+ * поэтому их повторное применение ничего не меняет.
+ * Операции только добавляют записи в очередь в памяти. Поток записи забирает всё накопленное разом
+ * и делает одну запись в файл и один FileChannel.force на группу операций — как часто, задаёт {@link Durability}.
+ * Когда записей накапливается больше порога, журнал переименовывается в «снимок.log.old», а новый снимок
+ * пишется в фоновом потоке; после замены снимка старый журнал удаляется. Если снимок записать не удалось,
+ * старый журнал остаётся, журнал перестаёт принимать операции, а при следующем сжатии текущий журнал
+ * дописывается к старому, а не заменяет его. Восстановление: снимок, затем старый журнал (если сбой случился
+ * до его удаления) и текущий журнал.
+ */
+class TaskJournal {
+    // Задача создана или изменена: за видом и длиной записи следует задача целиком, иначе — её id
+    private static final byte PUT = '+';
+    private static final byte REMOVE = '-';
+    private static final byte VIEW = 'v';
+
+    private final Path snapshotPath;
+    private final Path logPath;
+    private final Path oldLogPath;
+    private final int compactionThreshold;
+    private final Durability durability;
+    private final Thread writer = new Thread(this::writeLoop, "journal-writer");
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "journal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Запись журнала собирается здесь, чтобы перед ней можно было записать её длину; доступ под монитором add
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private volatile boolean isCompacting;
+    private Future<?> compaction;
+    // Используется только потоком записи
+    private FileChannel channel;
+    // Очередь групп: последняя открыта для новых записей, группа со снимком закрывает журнал
+    private List<Group> pending = new ArrayList<>(List.of(new Group()));
+    private CompletableFuture<Void> lastDurable = CompletableFuture.completedFuture(null);
+    private ManagerSaveException failure;
+    private boolean isClosing;
+    private int records;
+
+    TaskJournal(Path snapshotPath, int compactionThreshold, Durability durability) {
+        this.snapshotPath = snapshotPath;
+        this.logPath = Path.of(snapshotPath + ".log");
+        this.oldLogPath = Path.of(snapshotPath + ".log.old");
+        this.compactionThreshold = compactionThreshold;
+        this.durability = durability;
+        writer.setDaemon(true);
+    }
+
+    void start() {
+        writer.start();
+    }
+
+    void append(TaskEvent event) {
+        if (event.getKind() == TaskEvent.Kind.DELETED) {
+            add(REMOVE, event.getId(), null);
+        } else {
+            add(PUT, event.getId(), event.getAfter());
+        }
+    }
+
+    void appendView(int id) {
+        add(VIEW, id, null);
+    }
+
+    // Конец операции: поток записи будится, если ему не задан интервал. true — журнал пора сжать
+    synchronized boolean commit() {
+        if (failure != null) {
+            throw failure;
+        }
+        if (durability.getKind() != Durability.Kind.INTERVAL && current().hasRecords()) {
+            notifyAll();
+        }
+        return records >= compactionThreshold && !isCompacting;
+    }
+
+    // Завершается, когда все уже добавленные записи сохранены согласно политике
+    synchronized CompletableFuture<Void> whenDurable() {
+        return failure != null ? CompletableFuture.failedFuture(failure) : lastDurable;
+    }
+
+    // Снимок и история берутся в потоке операции; журнал закрывается после записей этой группы
+    synchronized void compact(TaskManagerSnapshot snapshot, List<Task> history, int lastId) {
+        isCompacting = true;
+        current().snapshot = snapshot;
+        current().history = history;
+        current().lastId = lastId;
+        pending.add(new Group());
+        records = 0;
+        notifyAll();
+    }
+
+    // Записывает накопленное, дожидается фонового сжатия и закрывает журнал
+    void close() {
+        synchronized (this) {
+            isClosing = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        awaitCompaction();
+        compactor.shutdown();
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    void awaitCompaction() {
+        Future<?> current;
+        synchronized (this) {
+            current = compaction;
+        }
+        if (current == null) {
+            return;
+        }
+        try {
+            current.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new ManagerSaveException("Ошибка записи снимка");
+        }
+    }
+
+    // Снимок заменяется целиком, журналы удаляются: используется при импорте, пока журнал не открыт
+    void replace(TaskManagerSnapshot snapshot, List<Task> history, int lastId) {
+        writeSnapshot(snapshot, history, lastId);
+        try {
+            Files.deleteIfExists(logPath);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи журнала");
+        }
+    }
+
+    private synchronized void add(byte kind, int id, Task task) {
+        Group group = current();
+        if (!group.hasRecords()) {
+            lastDurable = group.durable;
+        }
+        try {
+            // длина записи отличает недописанную последнюю запись от повреждённой
+            record.reset();
+            if (task == null) {
+                recordOut.writeInt(id);
+            } else {
+                BinaryTaskFormatter.writeTask(recordOut, task);
+            }
+            group.out.writeByte(kind);
+            group.out.writeInt(record.size());
+            record.writeTo(group.out);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи журнала");
+        }
+        records++;
+    }
+
+    private Group current() {
+        return pending.get(pending.size() - 1);
+    }
+
+    private void writeLoop() {
+        boolean isLast = false;
+        while (!isLast) {
+            List<Group> groups;
+            synchronized (this) {
+                try {
+                    awaitWork();
+                } catch (InterruptedException e) {
+                    isClosing = true;
+                }
+                isLast = isClosing;
+                groups = pending;
+                pending = new ArrayList<>(List.of(new Group()));
+            }
+            try {
+                write(groups);
+                groups.forEach(group -> group.durable.complete(null));
+            } catch (IOException | RuntimeException e) {
+                fail("Ошибка записи журнала", groups);
+                return;
+            }
+        }
+        try {
+            closeChannel();
+        } catch (IOException e) {
+            fail("Ошибка записи журнала", List.of());
+        }
+    }
+
+    // Вызывается под блокировкой журнала
+    private void awaitWork() throws InterruptedException {
+        if (durability.getKind() == Durability.Kind.INTERVAL) {
+            long deadline = System.nanoTime() + durability.getInterval().toNanos();
+            long remaining;
+            while (!isClosing && (remaining = deadline - System.nanoTime()) > 0) {
+                wait(remaining / 1_000_000, (int) (remaining % 1_000_000));
+            }
+        } else {
+            while (!isClosing && pending.size() == 1 && !current().hasRecords()) {
+                wait();
+            }
+        }
+    }
+
+    private void write(List<Group> groups) throws IOException {
+        boolean isWritten = false;
+        for (Group group : groups) {
+            if (group.hasRecords()) {
+                if (channel == null) {
+                    openChannel();
+                }
+                writeFully(channel, group.records.toByteArray());
+                isWritten = true;
+            }
+            if (group.snapshot != null) {
+                rotate(group.snapshot, group.history, group.lastId);
+                isWritten = false;
+            }
+        }
+        if (isWritten && durability.getKind() != Durability.Kind.OS_MANAGED) {
+            channel.force(false);
+        }
+    }
+
+    // Записи до снимка остаются в старом журнале, пока снимок не заменён
+    private void rotate(TaskManagerSnapshot snapshot, List<Task> history, int lastId) throws IOException {
+        closeChannel();
+        if (Files.exists(oldLogPath)) {
+            appendToOldLog();
+        } else if (Files.exists(logPath)) {
+            Files.move(logPath, oldLogPath);
+        }
+        Future<?> submitted = compactor.submit(() -> {
+            try {
+                writeSnapshot(snapshot, history, lastId);
+            } catch (RuntimeException e) {
+                fail("Ошибка записи снимка", List.of());
+                throw e;
+            } finally {
+                isCompacting = false;
+            }
+        });
+        synchronized (this) {
+            compaction = submitted;
+        }
+    }
+
+    // Старый журнал ещё не вошёл ни в один снимок (прежнее сжатие не удалось или прервано):
+    // его нельзя заменять, поэтому записи текущего журнала без заголовка дописываются в его конец
+    private void appendToOldLog() throws IOException {
+        if (Files.exists(logPath)) {
+            byte[] log = Files.readAllBytes(logPath);
+            if (log.length > BinaryTaskFormatter.LOG_HEADER_SIZE) {
+                try (FileChannel oldLog = FileChannel.open(oldLogPath, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND)) {
+                    writeFully(oldLog, Arrays.copyOfRange(log, BinaryTaskFormatter.LOG_HEADER_SIZE, log.length));
+                    if (durability.getKind() != Durability.Kind.OS_MANAGED) {
+                        oldLog.force(false);
+                    }
+                }
+            }
+            Files.delete(logPath);
+        }
+    }
+
+    // Новый журнал начинается с метки и версии формата
+    private void openChannel() throws IOException {
+        channel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        if (channel.size() == 0) {
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            BinaryTaskFormatter.writeLogHeader(new DataOutputStream(header));
+            writeFully(channel, header.toByteArray());
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        if (durability.getKind() != Durability.Kind.OS_MANAGED) {
+            channel.force(false);
+        }
+        channel.close();
+        channel = null;
+    }
+
+    // Сохраняется первая ошибка: после неё операции и whenDurable завершаются с ошибкой
+    private synchronized void fail(String message, List<Group> groups) {
+        if (failure == null) {
+            failure = new ManagerSaveException(message);
+        }
+        groups.forEach(group -> group.durable.completeExceptionally(failure));
+        pending.forEach(group -> group.durable.completeExceptionally(failure));
+    }
+
+    private void writeSnapshot(TaskManagerSnapshot snapshot, List<Task> history, int lastId) {
+        Path tempPath = Path.of(snapshotPath + ".tmp");
+        try {
+            try (FileChannel snapshotChannel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(snapshotChannel), 1 << 16));
+                BinaryTaskFormatter.writeSnapshot(out, snapshot, history, lastId);
+                out.flush();
+                if (durability.getKind() != Durability.Kind.OS_MANAGED) {
+                    snapshotChannel.force(true);
+                }
+            }
+            Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(oldLogPath);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи снимка");
+        }
+    }
+
+    private static void writeFully(FileChannel channel, byte[] content) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Итоговое состояние после снимка и журналов: задачи и история просмотров
+    State restore() {
+        State state = new State();
+        try {
+            if (Files.exists(snapshotPath)) {
+                BinaryTaskFormatter.Snapshot snapshot = BinaryTaskFormatter.readSnapshot(snapshotPath);
+                state.snapshotTasks = snapshot.getTasks();
+                state.lastId = snapshot.getLastId();
+                for (int viewedId : snapshot.getHistory()) {
+                    state.view(viewedId);
+                }
+            }
+            for (Path path : List.of(oldLogPath, logPath)) {
+                if (Files.exists(path)) {
+                    readLog(path, state);
+                }
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка чтения файла");
+        }
+        return state;
+    }
+
+    private static void readLog(Path path, State state) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        // сбой мог случиться при записи метки нового журнала
+        if (buffer.remaining() < BinaryTaskFormatter.LOG_HEADER_SIZE) {
+            return;
+        }
+        BinaryTaskFormatter.checkHeader(buffer, BinaryTaskFormatter.LOG_MAGIC, BinaryTaskFormatter.LOG_VERSION, path);
+        while (buffer.hasRemaining()) {
+            // последняя запись могла быть записана не полностью при сбое: короче своей длины бывает только она
+            if (buffer.remaining() < 1 + Integer.BYTES) {
+                return;
+            }
+            byte kind = buffer.get();
+            int length = buffer.getInt();
+            if (length < 0) {
+                throw new ManagerSaveException("Повреждён журнал " + path);
+            }
+            if (length > buffer.remaining()) {
+                return;
+            }
+            ByteBuffer record = buffer.slice();
+            record.limit(length);
+            buffer.position(buffer.position() + length);
+            try {
+                switch (kind) {
+                    case PUT:
+                        state.put(BinaryTaskFormatter.readTask(record));
+                        break;
+                    case REMOVE:
+                        state.remove(record.getInt());
+                        break;
+                    case VIEW:
+                        state.view(record.getInt());
+                        break;
+                    default:
+                        throw new ManagerSaveException("Повреждён журнал " + path);
+                }
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+                throw new ManagerSaveException("Повреждён журнал " + path);
+            }
+            if (record.hasRemaining()) {
+                throw new ManagerSaveException("Повреждён журнал " + path);
+            }
+        }
+    }
+
+    static class State {
+        private List<Task> snapshotTasks = List.of();
+        private final IntObjectHashMap<Task> changed = new IntObjectHashMap<>();
+        private final IntHashSet removed = new IntHashSet();
+        private final LinkedHashSet<Integer> history = new LinkedHashSet<>();
+        private int lastId;
+
+        private void put(Task task) {
+            changed.put(task.getId(), task);
+            removed.remove(task.getId());
+            lastId = Math.max(lastId, task.getId());
+        }
+
+        private void remove(int id) {
+            changed.remove(id);
+            removed.add(id);
+            history.remove(id);
+            lastId = Math.max(lastId, id);
+        }
+
+        // Повторный просмотр переносит задачу в конец, как в HistoryManager
+        private void view(int id) {
+            history.remove(id);
+            history.add(id);
+        }
+
+        // Задачи снимка, не изменённые и не удалённые журналом, затем задачи из журнала
+        void forEachTask(Consumer<Task> action) {
+            for (Task task : snapshotTasks) {
+                if (!changed.containsKey(task.getId()) && !removed.contains(task.getId())) {
+                    action.accept(task);
+                }
+            }
+            changed.values().forEach(action);
+        }
+
+        List<Integer> getHistory() {
+            return new ArrayList<>(history);
+        }
+
+        int getLastId() {
+            return lastId;
+        }
+    }
+
+    // Записи операций, которые попадут в файл одной записью
+    private static class Group {
+        private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(records);
+        private final CompletableFuture<Void> durable = new CompletableFuture<>();
+        private TaskManagerSnapshot snapshot;
+        private List<Task> history;
+        private int lastId;
+
+        boolean hasRecords() {
+            return records.size() > 0;
+        }
+    }
+}
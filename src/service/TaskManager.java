@@ -3,6 +3,8 @@ package service;
 import model.*;
 
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -57,4 +59,64 @@ public interface TaskManager {
 
     List<Task> getPrioritizedTasks();
 
+    // Представления только для чтения: общие экземпляры без копирования, изменять их нельзя
+    List<Task> getTasksView();
+
+    List<Epic> getEpicsView();
+
+    List<Subtask> getSubtasksView();
+
+    List<Subtask> getEpicSubtasksView(int epicId);
+
+    List<Task> getPrioritizedTasksView();
+
+    Task getTaskView(int id);
+
+    Epic getEpicView(int id);
+
+    Subtask getSubtaskView(int id);
+
+    // Постраничное получение по курсору: не более limit элементов с id больше afterId, по возрастанию id
+    List<Task> getTasksPage(int afterId, int limit);
+
+    List<Epic> getEpicsPage(int afterId, int limit);
+
+    List<Subtask> getSubtasksPage(int afterId, int limit);
+
+    // Выборка и количество по статусу без просмотра всех задач
+    List<Task> getByStatus(TaskType type, TaskStatus status);
+
+    int countByStatus(TaskType type, TaskStatus status);
+
+    // Не более limit самых просматриваемых задач всех типов по убыванию числа просмотров (оценка,
+    // давние просмотры постепенно забываются)
+    List<Task> getHotTasks(int limit);
+
+    // Просмотр, который не попадает в общую историю (например, записан в историю пользователя):
+    // учитывается только в списке самых просматриваемых задач
+    void recordView(int id);
+
+    // Поиск: не более limit задач всех типов по возрастанию id, в названии или описании которых есть все слова запроса
+    List<Task> search(String query, int limit);
+
+    // Задачи и подзадачи, начинающиеся в период с from по to включительно, по времени начала
+    List<Task> getTasksBetween(LocalDate from, LocalDate to);
+
+    // Задачи и подзадачи, выполнение которых приходится на период с from по to включительно
+    List<Task> getTasksOverlapping(LocalDate from, LocalDate to);
+
+    // Самая ранняя дата не раньше notBefore, на которую можно поставить задачу длительностью duration без пересечений
+    LocalDate findEarliestSlot(Duration duration, LocalDate notBefore);
+
+    // Пакетные изменения: пакет проверяется целиком и применяется полностью либо не применяется вовсе
+    void createAll(List<? extends Task> tasks);
+
+    void applyBatch(List<BatchOperation> operations);
+
+    // Согласованный снимок только для чтения: не блокирует последующие изменения и не меняется вместе с ними
+    TaskManagerSnapshot snapshot();
+
+    // Номер версии данных: растёт при каждом изменении, поэтому по нему можно проверять актуальность кэшей
+    long getVersion();
+
 }
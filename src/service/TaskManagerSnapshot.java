@@ -0,0 +1,118 @@
+package service;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import util.PersistentIntMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Согласованное состояние менеджера на момент версии getVersion(): последующие изменения в снимок не попадают.
+ * Задачи в снимке — общие экземпляры только для чтения, изменять их нельзя.
+ */
+public final class TaskManagerSnapshot {
+    private final long version;
+    // Снимок может состоять из нескольких частей с непересекающимися id — по одной на шард
+    private final List<PersistentIntMap<Task>> tasks;
+    private final List<PersistentIntMap<Epic>> epics;
+    private final List<PersistentIntMap<Subtask>> subtasks;
+
+    TaskManagerSnapshot(long version, PersistentIntMap<Task> tasks, PersistentIntMap<Epic> epics,
+                        PersistentIntMap<Subtask> subtasks) {
+        this(version, List.of(tasks), List.of(epics), List.of(subtasks));
+    }
+
+    private TaskManagerSnapshot(long version, List<PersistentIntMap<Task>> tasks, List<PersistentIntMap<Epic>> epics,
+                                List<PersistentIntMap<Subtask>> subtasks) {
+        this.version = version;
+        this.tasks = tasks;
+        this.epics = epics;
+        this.subtasks = subtasks;
+    }
+
+    // Объединение снимков частей, взятых одновременно; версия — сумма версий частей
+    static TaskManagerSnapshot combine(List<TaskManagerSnapshot> parts) {
+        long version = 0;
+        List<PersistentIntMap<Task>> tasks = new ArrayList<>();
+        List<PersistentIntMap<Epic>> epics = new ArrayList<>();
+        List<PersistentIntMap<Subtask>> subtasks = new ArrayList<>();
+        for (TaskManagerSnapshot part : parts) {
+            version += part.version;
+            tasks.addAll(part.tasks);
+            epics.addAll(part.epics);
+            subtasks.addAll(part.subtasks);
+        }
+        return new TaskManagerSnapshot(version, tasks, epics, subtasks);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // Все задачи по возрастанию id
+    public List<Task> getTasks() {
+        return getTasksPage(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    public List<Epic> getEpics() {
+        return getEpicsPage(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    public List<Subtask> getSubtasks() {
+        return getSubtasksPage(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    public Task getTask(int id) {
+        return get(tasks, id);
+    }
+
+    public Epic getEpic(int id) {
+        return get(epics, id);
+    }
+
+    public Subtask getSubtask(int id) {
+        return get(subtasks, id);
+    }
+
+    // Постраничное получение по курсору: не более limit элементов с id больше afterId, по возрастанию id
+    public List<Task> getTasksPage(int afterId, int limit) {
+        return page(tasks, map -> map.valuesAfter(afterId, limit), limit);
+    }
+
+    public List<Epic> getEpicsPage(int afterId, int limit) {
+        return page(epics, map -> map.valuesAfter(afterId, limit), limit);
+    }
+
+    public List<Subtask> getSubtasksPage(int afterId, int limit) {
+        return page(subtasks, map -> map.valuesAfter(afterId, limit), limit);
+    }
+
+    private static <T> T get(List<PersistentIntMap<T>> parts, int id) {
+        for (PersistentIntMap<T> part : parts) {
+            T task = part.get(id);
+            if (task != null) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private static <T extends Task> List<T> page(List<PersistentIntMap<T>> parts,
+                                                 Function<PersistentIntMap<T>, List<T>> query, int limit) {
+        if (parts.size() == 1) {
+            return Collections.unmodifiableList(query.apply(parts.get(0)));
+        }
+        List<T> result = new ArrayList<>();
+        for (PersistentIntMap<T> part : parts) {
+            result.addAll(query.apply(part));
+        }
+        result.sort(Comparator.comparingInt(Task::getId));
+        int size = Math.max(limit, 0);
+        return Collections.unmodifiableList(result.size() > size ? result.subList(0, size) : result);
+    }
+}
@@ -0,0 +1,124 @@
+package service;
+
+import model.Task;
+import util.SortedIntSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Инвертированный индекс по словам названия и описания: слово -> упорядоченные id задач.
+ * Поиск пересекает упорядоченные списки с экспоненциальным поиском, поэтому его стоимость
+ * определяется длиной списков слов запроса и размером результата, а не размером доски.
+ */
+class TextIndex {
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final Map<String, SortedIntSet> postings = new HashMap<>();
+
+    void add(Task task) {
+        for (String token : tokenize(task)) {
+            postings.computeIfAbsent(token, key -> new SortedIntSet()).add(task.getId());
+        }
+    }
+
+    void remove(Task task) {
+        for (String token : tokenize(task)) {
+            SortedIntSet ids = postings.get(token);
+            if (ids != null && ids.remove(task.getId()) && ids.isEmpty()) {
+                postings.remove(token);
+            }
+        }
+    }
+
+    // Переиндексация нужна, только если изменился текст задачи
+    void replace(Task oldTask, Task newTask) {
+        if (!Objects.equals(oldTask.getName(), newTask.getName())
+                || !Objects.equals(oldTask.getDescription(), newTask.getDescription())) {
+            remove(oldTask);
+            add(newTask);
+        }
+    }
+
+    // Не более limit id по возрастанию, в тексте которых есть все слова запроса
+    int[] search(String query, int limit) {
+        Set<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || limit <= 0) {
+            return new int[0];
+        }
+        List<SortedIntSet> lists = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            SortedIntSet ids = postings.get(token);
+            if (ids == null) {
+                return new int[0];
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(SortedIntSet::size));
+        return intersect(lists, Math.min(limit, lists.get(0).size()));
+    }
+
+    // Пересечение "чехардой": кандидат — наибольший из текущих элементов списков, каждый список догоняет его
+    // экспоненциальным поиском. Совпадение найдено, когда кандидата подтвердили все списки подряд
+    private static int[] intersect(List<SortedIntSet> lists, int limit) {
+        int[] result = new int[limit];
+        int[] positions = new int[lists.size()];
+        int found = 0;
+        int candidate = Integer.MIN_VALUE;
+        int matched = 0;
+        int i = 0;
+        while (found < limit) {
+            SortedIntSet ids = lists.get(i);
+            int position = ids.indexAtLeast(candidate, positions[i]);
+            if (position == ids.size()) {
+                break;
+            }
+            positions[i] = position;
+            int id = ids.get(position);
+            if (id == candidate) {
+                matched++;
+            } else {
+                candidate = id;
+                matched = 1;
+            }
+            if (matched == lists.size()) {
+                result[found++] = candidate;
+                if (candidate == Integer.MAX_VALUE) {
+                    break;
+                }
+                candidate++;
+                matched = 0;
+            }
+            i = (i + 1) % lists.size();
+        }
+        return Arrays.copyOf(result, found);
+    }
+
+    private static Set<String> tokenize(Task task) {
+        Set<String> tokens = tokenize(task.getName());
+        tokens.addAll(tokenize(task.getDescription()));
+        return tokens;
+    }
+
+    private static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,113 @@
+package service;
+
+import model.Task;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Индекс интервалов выполнения задач, упорядоченный по времени начала.
+ * Задачи без времени (startTime == EPOCH) в индекс не попадают. Менеджер не допускает пересечений,
+ * поэтому интервалы в индексе не пересекаются и время окончания растёт вместе со временем начала:
+ * проверка пересечения занимает O(log n). Вместе с интервалами поддерживаются свободные промежутки между ними
+ * для поиска ближайшего свободного времени.
+ */
+class TimeIntervalIndex {
+    private static final long MINUTES_PER_DAY = 24 * 60;
+
+    private final NavigableMap<LocalDateTime, Task> startToTask = new TreeMap<>();
+    private final FreeSlotIndex freeSlots = new FreeSlotIndex();
+
+    TimeIntervalIndex() {
+        freeSlots.put(FreeSlotIndex.OPEN, FreeSlotIndex.UNBOUNDED);
+    }
+
+    void add(Task task) {
+        if (isTimed(task)) {
+            LocalDateTime start = startOf(task);
+            startToTask.put(start, task);
+            // промежуток между соседями делится задачей на два
+            Map.Entry<LocalDateTime, Task> next = startToTask.higherEntry(start);
+            freeSlots.put(slotAfter(startToTask.lowerEntry(start)), startMinute(task));
+            freeSlots.put(slotAfter(task), next == null ? FreeSlotIndex.UNBOUNDED : startMinute(next.getValue()));
+        }
+    }
+
+    void remove(Task task) {
+        if (isTimed(task)) {
+            LocalDateTime start = startOf(task);
+            if (startToTask.remove(start, task)) {
+                Map.Entry<LocalDateTime, Task> next = startToTask.higherEntry(start);
+                freeSlots.remove(slotAfter(task));
+                freeSlots.put(slotAfter(startToTask.lowerEntry(start)),
+                        next == null ? FreeSlotIndex.UNBOUNDED : startMinute(next.getValue()));
+            }
+        }
+    }
+
+    // Самая ранняя дата не раньше notBefore, с которой задача длительностью duration ни с чем не пересекается
+    LocalDate findEarliestSlot(Duration duration, LocalDate notBefore) {
+        long from = notBefore.toEpochDay() * MINUTES_PER_DAY;
+        long minutes = duration.toMinutes();
+        if (from + minutes < freeSlots.floorEnd(from)) {
+            return notBefore;
+        }
+        long start = freeSlots.firstFit(from, minutes);
+        return LocalDateTime.ofEpochSecond(start * 60, 0, ZoneOffset.UTC).toLocalDate();
+    }
+
+    boolean hasOverlap(Task task) {
+        Map.Entry<LocalDateTime, Task> last = startToTask.floorEntry(task.getEndTime());
+        return last != null && endMinute(last.getValue()) >= startMinute(task);
+    }
+
+    // Задача, начинающаяся последней строго раньше time; null — такой нет
+    Task lastStartingBefore(LocalDateTime time) {
+        Map.Entry<LocalDateTime, Task> entry = startToTask.lowerEntry(time);
+        return entry == null ? null : entry.getValue();
+    }
+
+    // Проверка без учёта части задач индекса, например заменяемых пакетом изменений
+    boolean hasOverlap(Task task, Predicate<Task> isIgnored) {
+        long start = startMinute(task);
+        for (Task other : startToTask.headMap(task.getEndTime(), true).descendingMap().values()) {
+            if (!isIgnored.test(other)) {
+                return endMinute(other) >= start;
+            }
+        }
+        return false;
+    }
+
+    // Первая полночь строго после окончания задачи — самое раннее возможное начало следующей
+    private static long slotAfter(Task task) {
+        return (Math.floorDiv(endMinute(task), MINUTES_PER_DAY) + 1) * MINUTES_PER_DAY;
+    }
+
+    private static long slotAfter(Map.Entry<LocalDateTime, Task> entry) {
+        return entry == null ? FreeSlotIndex.OPEN : slotAfter(entry.getValue());
+    }
+
+    // Время в минутах от эпохи: сравнение без создания LocalDateTime
+    static long startMinute(Task task) {
+        return task.getStartTime().toEpochDay() * MINUTES_PER_DAY;
+    }
+
+    static long endMinute(Task task) {
+        return startMinute(task) + task.getDuration().toMinutes();
+    }
+
+    static boolean isTimed(Task task) {
+        return !task.getStartTime().isEqual(LocalDate.EPOCH);
+    }
+
+    static LocalDateTime startOf(Task task) {
+        return LocalDateTime.of(task.getStartTime(), LocalTime.MIN);
+    }
+}
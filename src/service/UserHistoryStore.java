@@ -0,0 +1,275 @@
+package service;
+
+import util.IntLruList;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Истории просмотров отдельных пользователей. Хранятся только id задач, сами задачи берутся из общего
+ * хранилища менеджера при чтении истории, поэтому задачи, удалённые после просмотра, просто пропускаются.
+ * В памяти держится не больше maxResidentUsers историй: при переполнении и после простоя дольше idleTimeout
+ * история пользователя, к которой дольше всех не обращались, записывается в HistoryStorage
+ * и загружается обратно при следующем обращении. Чтение и запись HistoryStorage идут вне общей блокировки.
+ */
+public class UserHistoryStore {
+    private final HistoryStorage storage;
+    private final int capacity;
+    private final int maxResidentUsers;
+    private final long idleTimeoutNanos;
+    // В порядке последнего обращения: первыми идут кандидаты на вытеснение
+    private final LinkedHashMap<String, Resident> residents = new LinkedHashMap<>(16, 0.75f, true);
+    // Вытесненные истории, запись которых ещё не завершена: до её окончания история берётся отсюда, а не из
+    // хранилища. Для каждого пользователя пишет один поток — тот, что добавил запись; более новую версию,
+    // появившуюся за время записи, он записывает следом
+    private final Map<String, int[]> saving = new HashMap<>();
+    // Истории, которые сейчас читаются из хранилища: остальные запросы того же пользователя ждут загрузки
+    private final Map<String, CompletableFuture<Void>> loading = new HashMap<>();
+    private long evictedUsersCount;
+
+    public UserHistoryStore(HistoryStorage storage, int capacity, int maxResidentUsers, Duration idleTimeout) {
+        if (capacity <= 0 || maxResidentUsers <= 0) {
+            throw new IllegalArgumentException("Размер истории и число пользователей в памяти должны быть положительными");
+        }
+        this.storage = storage;
+        this.capacity = capacity;
+        this.maxResidentUsers = maxResidentUsers;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+    }
+
+    public void add(String userId, int taskId) {
+        access(userId, resident -> {
+            resident.taskIds.add(taskId);
+            resident.isChanged = true;
+            return null;
+        });
+    }
+
+    // Идентификаторы от самого старого просмотра к последнему
+    public int[] getHistory(String userId) {
+        return access(userId, resident -> resident.taskIds.toArray());
+    }
+
+    public synchronized int getResidentUsersCount() {
+        return residents.size();
+    }
+
+    public synchronized long getEvictedUsersCount() {
+        return evictedUsersCount;
+    }
+
+    // Запись всех изменённых историй, например перед остановкой сервера
+    public void flush() {
+        List<String> toSave = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, Resident> entry : residents.entrySet()) {
+                scheduleSave(entry.getKey(), entry.getValue(), toSave);
+            }
+        }
+        saveAll(toSave);
+    }
+
+    // Действие с историей выполняется под блокировкой, а чтение из хранилища и запись вытесненных историй —
+    // после её снятия, поэтому медленное хранилище задерживает только запросы того же пользователя
+    private <T> T access(String userId, Function<Resident, T> action) {
+        List<String> toSave = new ArrayList<>();
+        try {
+            while (true) {
+                CompletableFuture<Void> pending;
+                boolean isLoader = false;
+                synchronized (this) {
+                    Resident resident = resident(userId, toSave);
+                    if (resident != null) {
+                        return action.apply(resident);
+                    }
+                    pending = loading.get(userId);
+                    if (pending == null) {
+                        pending = new CompletableFuture<>();
+                        loading.put(userId, pending);
+                        isLoader = true;
+                    }
+                }
+                if (isLoader) {
+                    return load(userId, pending, action, toSave);
+                }
+                pending.join();
+            }
+        } finally {
+            saveAll(toSave);
+        }
+    }
+
+    // null — истории нет в памяти и её нужно загрузить из хранилища
+    private Resident resident(String userId, List<String> toSave) {
+        long now = System.nanoTime();
+        evictIdle(now, toSave);
+        Resident resident = residents.get(userId);
+        if (resident == null) {
+            int[] unsaved = saving.get(userId);
+            if (unsaved == null) {
+                return null;
+            }
+            resident = add(userId, unsaved, toSave);
+        }
+        resident.lastAccess = now;
+        return resident;
+    }
+
+    private <T> T load(String userId, CompletableFuture<Void> pending, Function<Resident, T> action,
+                       List<String> toSave) {
+        try {
+            int[] taskIds = storage.load(userId);
+            synchronized (this) {
+                Resident resident = add(userId, taskIds, toSave);
+                resident.lastAccess = System.nanoTime();
+                return action.apply(resident);
+            }
+        } finally {
+            synchronized (this) {
+                loading.remove(userId);
+            }
+            pending.complete(null);
+        }
+    }
+
+    private Resident add(String userId, int[] taskIds, List<String> toSave) {
+        Resident resident = new Resident(capacity);
+        for (int taskId : taskIds) {
+            resident.taskIds.add(taskId);
+        }
+        residents.put(userId, resident);
+        if (residents.size() > maxResidentUsers) {
+            evictEldest(toSave);
+        }
+        return resident;
+    }
+
+    private void evictIdle(long now, List<String> toSave) {
+        Iterator<Map.Entry<String, Resident>> iterator = residents.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Resident> entry = iterator.next();
+            if (now - entry.getValue().lastAccess < idleTimeoutNanos) {
+                break;
+            }
+            scheduleSave(entry.getKey(), entry.getValue(), toSave);
+            iterator.remove();
+            evictedUsersCount++;
+        }
+    }
+
+    private void evictEldest(List<String> toSave) {
+        Iterator<Map.Entry<String, Resident>> iterator = residents.entrySet().iterator();
+        Map.Entry<String, Resident> eldest = iterator.next();
+        scheduleSave(eldest.getKey(), eldest.getValue(), toSave);
+        iterator.remove();
+        evictedUsersCount++;
+    }
+
+    // Вызывается под блокировкой; пользователь попадает в toSave, если запись его истории ещё никто не ведёт
+    private void scheduleSave(String userId, Resident resident, List<String> toSave) {
+        if (resident.isChanged) {
+            resident.isChanged = false;
+            if (saving.put(userId, resident.taskIds.toArray()) == null) {
+                toSave.add(userId);
+            }
+        }
+    }
+
+    // Вызывается без блокировки; ошибка записи одной истории не мешает записать остальные
+    private void saveAll(List<String> userIds) {
+        RuntimeException failure = null;
+        for (String userId : userIds) {
+            try {
+                save(userId);
+            } catch (RuntimeException e) {
+                restoreUnsaved(userId);
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void save(String userId) {
+        int[] taskIds;
+        synchronized (this) {
+            taskIds = saving.get(userId);
+        }
+        while (taskIds != null) {
+            storage.save(userId, taskIds);
+            synchronized (this) {
+                int[] latest = saving.get(userId);
+                if (latest == taskIds) {
+                    saving.remove(userId);
+                    latest = null;
+                }
+                taskIds = latest;
+            }
+        }
+    }
+
+    // Запись не удалась: история возвращается в память изменённой, чтобы её записали при следующем вытеснении
+    private synchronized void restoreUnsaved(String userId) {
+        int[] taskIds = saving.remove(userId);
+        Resident resident = residents.get(userId);
+        if (resident == null) {
+            resident = new Resident(capacity);
+            for (int taskId : taskIds) {
+                resident.taskIds.add(taskId);
+            }
+            resident.lastAccess = System.nanoTime();
+            residents.put(userId, resident);
+        }
+        resident.isChanged = true;
+    }
+
+    // Имя пользователя из заголовка запроса может содержать любые символы, поэтому в ключах оно кодируется
+    static String encodeUserId(String userId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(userId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String idsToString(int[] taskIds) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int taskId : taskIds) {
+            if (stringBuilder.length() > 0) {
+                stringBuilder.append(',');
+            }
+            stringBuilder.append(taskId);
+        }
+        return stringBuilder.toString();
+    }
+
+    static int[] idsFromString(String value) {
+        if (value.isBlank()) {
+            return new int[0];
+        }
+        String[] elements = value.trim().split(",");
+        int[] taskIds = new int[elements.length];
+        for (int i = 0; i < elements.length; i++) {
+            taskIds[i] = Integer.parseInt(elements[i]);
+        }
+        return taskIds;
+    }
+
+    private static class Resident {
+        final IntLruList taskIds;
+        long lastAccess;
+        boolean isChanged;
+
+        Resident(int capacity) {
+            taskIds = new IntLruList(capacity);
+        }
+    }
+}
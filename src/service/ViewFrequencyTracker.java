@@ -0,0 +1,181 @@
+package service;
+
+import util.IntIntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Приблизительная частота просмотров задач в ограниченной памяти: счётчики Count-Min (DEPTH строк по WIDTH
+ * ячеек, оценка — минимум по строкам, увеличиваются только минимальные ячейки) и куча из capacity задач
+ * с наибольшими оценками. Отдельный счётчик на каждую задачу не хранится, оценка может быть только завышена.
+ * После каждых RESET_INTERVAL просмотров все счётчики делятся пополам, поэтому давние просмотры постепенно
+ * перестают влиять на список популярных задач.
+ */
+class ViewFrequencyTracker {
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 4096;
+    private static final int RESET_INTERVAL = WIDTH * 10;
+    private static final int[] SEEDS = {0x5bd1e995, 0x27d4eb2f, 0x165667b1, 0x9e3779b9};
+    private static final int NONE = -1;
+
+    private final int[][] counters = new int[DEPTH][WIDTH];
+    private final int[] cells = new int[DEPTH];
+    private final int capacity;
+    // Минимальная куча по оценке: в корне — самая редко просматриваемая из отслеживаемых задач
+    private final int[] heapIds;
+    private final int[] heapCounts;
+    private final IntIntHashMap idToHeapIndex;
+    private int heapSize;
+    private int viewsSinceReset;
+
+    ViewFrequencyTracker(int capacity) {
+        this.capacity = capacity;
+        heapIds = new int[capacity];
+        heapCounts = new int[capacity];
+        idToHeapIndex = new IntIntHashMap(capacity, NONE);
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    synchronized void add(int id) {
+        int estimate = increment(id);
+        int index = idToHeapIndex.get(id);
+        if (index != NONE) {
+            heapCounts[index] = estimate;
+            siftDown(index);
+        } else if (heapSize < capacity) {
+            heapIds[heapSize] = id;
+            heapCounts[heapSize] = estimate;
+            idToHeapIndex.put(id, heapSize);
+            siftUp(heapSize++);
+        } else if (estimate > heapCounts[0]) {
+            idToHeapIndex.remove(heapIds[0]);
+            heapIds[0] = id;
+            heapCounts[0] = estimate;
+            idToHeapIndex.put(id, 0);
+            siftDown(0);
+        }
+        if (++viewsSinceReset == RESET_INTERVAL) {
+            halve();
+        }
+    }
+
+    // Задача больше не отслеживается в куче (например, удалена); её счётчики затухают сами
+    synchronized void remove(int id) {
+        int index = idToHeapIndex.remove(id);
+        if (index == NONE) {
+            return;
+        }
+        heapSize--;
+        if (index != heapSize) {
+            // на место удалённой встаёт последняя задача кучи
+            int movedId = heapIds[heapSize];
+            heapIds[index] = movedId;
+            heapCounts[index] = heapCounts[heapSize];
+            idToHeapIndex.put(movedId, index);
+            siftUp(index);
+            siftDown(idToHeapIndex.get(movedId));
+        }
+    }
+
+    synchronized int estimate(int id) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters[row][cell(row, id)]);
+        }
+        return estimate;
+    }
+
+    // Не более limit отслеживаемых задач по убыванию оценки, при равенстве — по возрастанию id
+    synchronized int[] top(int limit) {
+        long[] entries = new long[heapSize];
+        for (int i = 0; i < heapSize; i++) {
+            // старшие биты — инвертированная оценка, младшие — id: сортировка по возрастанию даёт нужный порядок
+            entries[i] = ((long) (Integer.MAX_VALUE - heapCounts[i]) << 32) | (heapIds[i] - (long) Integer.MIN_VALUE);
+        }
+        Arrays.sort(entries);
+        int[] ids = new int[Math.min(Math.max(limit, 0), heapSize)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (int) ((entries[i] & 0xFFFFFFFFL) + Integer.MIN_VALUE);
+        }
+        return ids;
+    }
+
+    private int increment(int id) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            cells[row] = cell(row, id);
+            estimate = Math.min(estimate, counters[row][cells[row]]);
+        }
+        for (int row = 0; row < DEPTH; row++) {
+            if (counters[row][cells[row]] == estimate) {
+                counters[row][cells[row]]++;
+            }
+        }
+        return estimate + 1;
+    }
+
+    // Деление пополам сохраняет порядок оценок, поэтому куча остаётся упорядоченной
+    private void halve() {
+        for (int[] row : counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>>= 1;
+            }
+        }
+        for (int i = 0; i < heapSize; i++) {
+            heapCounts[i] >>>= 1;
+        }
+        viewsSinceReset = 0;
+    }
+
+    private static int cell(int row, int id) {
+        int hash = (id ^ SEEDS[row]) * 0x9E3779B9;
+        hash ^= hash >>> 15;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash & (WIDTH - 1);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heapCounts[parent] <= heapCounts[index]) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < heapSize && heapCounts[left] < heapCounts[smallest]) {
+                smallest = left;
+            }
+            if (right < heapSize && heapCounts[right] < heapCounts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int id = heapIds[i];
+        int count = heapCounts[i];
+        heapIds[i] = heapIds[j];
+        heapCounts[i] = heapCounts[j];
+        heapIds[j] = id;
+        heapCounts[j] = count;
+        idToHeapIndex.put(heapIds[i], i);
+        idToHeapIndex.put(heapIds[j], j);
+    }
+}
@@ -0,0 +1,95 @@
+package test;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.ConcurrentTaskManager;
+import service.ManagerSaveException;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static model.TaskStatus.DONE;
+import static model.TaskStatus.NEW;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ConcurrentTaskManagerTest extends TaskManagerTest<ConcurrentTaskManager> {
+    static final int THREADS = 8;
+    static final int TASKS_PER_THREAD = 100;
+
+    @BeforeEach
+    void beforeEach() {
+        manager = new ConcurrentTaskManager();
+        manager.setVerificationEnabled(true);
+    }
+
+    @Test
+    void shouldCreateTasksFromSeveralThreadsWithUniqueIds() throws Exception {
+        Epic epic = new Epic("Переезд", "");
+        manager.createEpic(epic);
+        List<Callable<Void>> jobs = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            final int thread = i;
+            jobs.add(() -> {
+                for (int j = 0; j < TASKS_PER_THREAD; j++) {
+                    LocalDate day = LocalDate.of(2023, 1, 1).plusDays(thread * TASKS_PER_THREAD + j);
+                    if (j % 2 == 0) {
+                        manager.createTask(new Task("task", "", NEW, day, Duration.ofMinutes(60L)));
+                    } else {
+                        manager.createSubtask(new Subtask("subtask", "", DONE, epic.getId(), day,
+                                Duration.ofMinutes(60L)));
+                    }
+                    manager.getListOfAllTasks();
+                    manager.getHistory();
+                }
+                return null;
+            });
+        }
+        runAll(jobs);
+
+        assertEquals(THREADS * TASKS_PER_THREAD, manager.getPrioritizedTasks().size());
+        assertEquals(THREADS * TASKS_PER_THREAD, manager.getPrioritizedTasks().stream()
+                .map(Task::getId).collect(Collectors.toSet()).size());
+        assertEquals(THREADS * TASKS_PER_THREAD / 2, manager.getEpicById(epic.getId()).getSubtasks().size());
+        assertEquals(DONE, manager.getEpicById(epic.getId()).getTaskStatus());
+    }
+
+    @Test
+    void shouldAcceptOnlyOneOfIntersectingTasksCreatedConcurrently() throws Exception {
+        List<Callable<Void>> jobs = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            jobs.add(() -> {
+                try {
+                    manager.createTask(new Task("task", "", NEW, LocalDate.of(2023, 7, 18),
+                            Duration.ofMinutes(120L)));
+                } catch (ManagerSaveException ignored) {
+                    // пересечение во времени
+                }
+                return null;
+            });
+        }
+        runAll(jobs);
+
+        assertEquals(1, manager.getListOfAllTasks().size());
+    }
+
+    void runAll(List<Callable<Void>> jobs) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Future<Void> future : executor.invokeAll(jobs)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
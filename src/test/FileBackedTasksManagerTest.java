@@ -1,6 +1,8 @@
 package test;
 
 import model.Epic;
+import model.Subtask;
+import model.Task;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -17,8 +19,13 @@ import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Collectors;
 
+import static model.TaskStatus.DONE;
+import static model.TaskStatus.NEW;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -128,6 +135,63 @@ public class FileBackedTasksManagerTest extends TaskManagerTest<FileBackedTasksM
 
     }
 
+    @Test
+    void shouldLoadAllTasksEpicStatusAndPrioritizedTasks() {
+        createAll();
+        Subtask subtask = manager.getListOfAllSubtasks().get(0);
+        subtask.setTaskStatus(DONE);
+        manager.updateSubtask(subtask);
+        List<Task> prioritized = manager.getPrioritizedTasks();
+        List<Epic> epics = manager.getListOfAllEpics();
+
+        manager = FileBackedTasksManager.loadFromFile(path);
+
+        assertEquals(getExpectedTasks(), manager.getListOfAllTasks());
+        assertEquals(epics, manager.getListOfAllEpics());
+        assertEquals(prioritized, manager.getPrioritizedTasks());
+    }
+
+    @Test
+    void shouldCheckTimeAgainstLoadedTasks() {
+        manager.createTask(new Task("Первая", "", NEW, LocalDate.of(2023, 7, 18), Duration.ofMinutes(120)));
+        manager.createTask(new Task("Вторая", "", NEW, LocalDate.of(2023, 7, 20), Duration.ofMinutes(60)));
+
+        manager = FileBackedTasksManager.loadFromFile(path);
+
+        assertEquals(List.of(1, 2), manager.getPrioritizedTasks().stream().map(Task::getId)
+                .collect(Collectors.toList()));
+        assertThrows(ManagerSaveException.class, () -> manager.createTask(
+                new Task("Пересекается", "", NEW, LocalDate.of(2023, 7, 20), Duration.ofMinutes(30))));
+        assertEquals(LocalDate.of(2023, 7, 19), manager.findEarliestSlot(Duration.ofMinutes(60),
+                LocalDate.of(2023, 7, 18)));
+    }
+
+    @Test
+    void shouldLoadHistoryWithoutSavingFile() throws IOException {
+        createAll();
+        manager.getSubtaskById(5);
+        manager.getTaskById(1);
+        manager.getEpicById(epicId);
+        String content = Files.readString(path);
+
+        manager = FileBackedTasksManager.loadFromFile(path);
+
+        assertEquals(List.of(5, 1, epicId), manager.getHistory().stream().map(Task::getId)
+                .collect(Collectors.toList()));
+        assertEquals(content, Files.readString(path));
+    }
+
+    @Test
+    void shouldThrowExceptionWhenLoadedTasksOverlap() throws IOException {
+        manager.createTask(new Task("Первая", "", NEW, LocalDate.of(2023, 7, 18), Duration.ofMinutes(120)));
+        String content = Files.readString(path);
+        String copy = content.lines().filter(data -> data.startsWith("1,")).findFirst().orElseThrow()
+                .replaceFirst("^1,", "2,");
+        Files.writeString(path, content.replaceFirst("\n\n", "\n" + copy + "\n\n"));
+
+        assertThrows(ManagerSaveException.class, () -> FileBackedTasksManager.loadFromFile(path));
+    }
+
     String readFile() {
         StringBuilder stringBuilder = new StringBuilder();
         try (Reader fileReader = new FileReader(path.getFileName().toString(), StandardCharsets.UTF_8);
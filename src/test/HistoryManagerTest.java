@@ -5,17 +5,31 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import server.KVServer;
+import service.ArrayHistoryManager;
 import service.HistoryManager;
+import service.HistoryStorage;
+import service.InMemoryHistoryManager;
 import service.Managers;
 import service.TaskManager;
+import service.UserHistoryStore;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class HistoryManagerTest {
@@ -69,4 +83,116 @@ public class HistoryManagerTest {
         assertEquals(1, taskManager.getHistory().size());
         assertEquals(2, taskManager.getHistory().get(0).getId());
     }
+
+    @Test
+    void shouldEvictLeastRecentlyViewedTaskWhenHistoryIsFull() {
+        HistoryManager historyManager = Managers.getDefaultHistory(3);
+        List<Task> tasks = taskManager.getListOfAllTasks();
+        tasks.forEach(historyManager::add);
+        assertEquals(List.of(2, 3, 4), historyManager.getHistory().stream()
+                .map(Task::getId).collect(Collectors.toList()));
+        assertEquals(1, historyManager.getEvictedCount());
+
+        historyManager.add(tasks.get(1));
+        historyManager.add(tasks.get(0));
+        assertEquals(List.of(4, 2, 1), historyManager.getHistory().stream()
+                .map(Task::getId).collect(Collectors.toList()));
+        assertEquals(2, historyManager.getEvictedCount());
+        assertEquals(3, historyManager.getCapacity());
+        assertThrows(IllegalArgumentException.class, () -> Managers.getDefaultHistory(0));
+    }
+
+    @Test
+    void shouldUnloadIdleUserHistoriesAndLoadThemBack() {
+        Map<String, int[]> saved = new HashMap<>();
+        HistoryStorage storage = new HistoryStorage() {
+            @Override
+            public void save(String userId, int[] taskIds) {
+                saved.put(userId, taskIds);
+            }
+
+            @Override
+            public int[] load(String userId) {
+                return saved.getOrDefault(userId, new int[0]);
+            }
+        };
+        UserHistoryStore userHistories = new UserHistoryStore(storage, 3, 10, Duration.ZERO);
+        Arrays.asList(1, 2, 3, 4, 2).forEach(id -> userHistories.add("alice", id));
+        assertArrayEquals(new int[]{3, 4, 2}, userHistories.getHistory("alice"));
+
+        userHistories.add("bob", 1);
+        assertArrayEquals(new int[]{3, 4, 2}, saved.get("alice"));
+        assertEquals(1, userHistories.getResidentUsersCount());
+        assertArrayEquals(new int[]{3, 4, 2}, userHistories.getHistory("alice"));
+        assertArrayEquals(new int[]{1}, saved.get("bob"));
+        assertEquals(1, userHistories.getResidentUsersCount());
+    }
+
+    @Test
+    void shouldReadOtherHistoriesWhileEvictedHistoryIsSaved() throws InterruptedException {
+        CountDownLatch saveStarted = new CountDownLatch(1);
+        CountDownLatch releaseSave = new CountDownLatch(1);
+        Map<String, int[]> saved = new ConcurrentHashMap<>();
+        HistoryStorage storage = new HistoryStorage() {
+            @Override
+            public void save(String userId, int[] taskIds) {
+                if (userId.equals("alice")) {
+                    saveStarted.countDown();
+                    try {
+                        releaseSave.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                saved.put(userId, taskIds);
+            }
+
+            @Override
+            public int[] load(String userId) {
+                return saved.getOrDefault(userId, new int[0]);
+            }
+        };
+        UserHistoryStore userHistories = new UserHistoryStore(storage, 3, 1, Duration.ofHours(1));
+        userHistories.add("alice", 1);
+        Thread evicting = new Thread(() -> userHistories.add("bob", 2));
+        evicting.start();
+        assertTrue(saveStarted.await(5, TimeUnit.SECONDS));
+
+        // история alice ещё записывается: запросы не ждут хранилище, а alice получает незаписанную историю
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+            assertArrayEquals(new int[]{2}, userHistories.getHistory("bob"));
+            userHistories.add("alice", 3);
+            assertArrayEquals(new int[]{1, 3}, userHistories.getHistory("alice"));
+        });
+        releaseSave.countDown();
+        evicting.join(5000);
+        userHistories.flush();
+
+        assertArrayEquals(new int[]{1, 3}, saved.get("alice"));
+        assertArrayEquals(new int[]{2}, saved.get("bob"));
+    }
+
+    @Test
+    void shouldKeepSameHistoryInArrayHistoryManager() {
+        HistoryManager expected = new InMemoryHistoryManager(50);
+        HistoryManager historyManager = new ArrayHistoryManager(50);
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            int id = random.nextInt(200);
+            if (random.nextInt(4) == 0) {
+                expected.remove(id);
+                historyManager.remove(id);
+            } else {
+                Task task = new Task("task" + id, "");
+                task.setId(id);
+                expected.add(task);
+                historyManager.add(task);
+            }
+            if (i % 100 == 0) {
+                assertEquals(expected.getHistory(), historyManager.getHistory());
+            }
+        }
+        assertEquals(expected.getHistory(), historyManager.getHistory());
+        assertEquals(expected.getEvictedCount(), historyManager.getEvictedCount());
+    }
 }
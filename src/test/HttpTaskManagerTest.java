@@ -8,13 +8,19 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import server.KVServer;
 import service.HttpTaskManager;
+import service.ManagerSaveException;
 
 import java.io.IOException;
 import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.List;
 
+import static model.TaskStatus.DONE;
+import static model.TaskStatus.NEW;
 import static server.KVServer.PORT;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class HttpTaskManagerTest extends TaskManagerTest<HttpTaskManager> {
     KVServer kvServer;
@@ -50,4 +56,22 @@ public class HttpTaskManagerTest extends TaskManagerTest<HttpTaskManager> {
         assertEquals(expectedPrioritizedTasks, manager.getPrioritizedTasks());
 
     }
+
+    @Test
+    void shouldContinueIdsAndCheckTimeAfterLoad() {
+        LocalDate date = LocalDate.of(2023, 7, 18);
+        manager.createTask(new Task("Прочитать книгу", "", NEW, date, Duration.ofDays(1)));
+        Epic epic = new Epic("Переезд", "");
+        manager.createEpic(epic);
+        manager.createSubtask(new Subtask("Собрать коробки", "", DONE, epic.getId(), date.plusDays(3),
+                Duration.ofHours(2)));
+        manager = new HttpTaskManager(URI.create("http://localhost:" + PORT));
+
+        assertEquals(DONE, manager.getEpicById(epic.getId()).getTaskStatus());
+        assertThrows(ManagerSaveException.class,
+                () -> manager.createTask(new Task("Пересечение", "", NEW, date, Duration.ofHours(1))));
+        Task task = new Task("Новая", "", NEW);
+        manager.createTask(task);
+        assertEquals(4, task.getId());
+    }
 }
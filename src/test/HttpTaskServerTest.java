@@ -14,19 +14,23 @@ import org.junit.jupiter.api.Test;
 import server.HttpTaskServer;
 import server.KVServer;
 import service.Adapters;
+import service.KVHistoryStorage;
 import service.KVTaskClient;
 import service.Managers;
 import service.TaskManager;
+import service.UserHistoryStore;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class HttpTaskServerTest {
     static final int PORT = 8080;
@@ -218,6 +222,152 @@ public class HttpTaskServerTest {
 
     }
 
+    @Test
+    void shouldGetTasksPage() throws IOException, InterruptedException {
+        postAllTasks();
+        path = String.format("%s%s/tasks/subtask?after=3&limit=10", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestGET(URI.create(path)));
+        List<Subtask> subtasks = gson.fromJson(response.body(), new TypeToken<List<Subtask>>() {
+        }.getType());
+        assertEquals(200, response.statusCode());
+        assertEquals(List.of(4), subtasks.stream().map(Task::getId).collect(Collectors.toList()));
+
+        path = String.format("%s%s/tasks/epic?limit=1", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestGET(URI.create(path)));
+        List<Epic> epics = gson.fromJson(response.body(), new TypeToken<List<Epic>>() {
+        }.getType());
+        assertEquals(List.of(1), epics.stream().map(Task::getId).collect(Collectors.toList()));
+
+        path = String.format("%s%s/tasks/task?after=5", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestGET(URI.create(path)));
+        List<Task> tasks = gson.fromJson(response.body(), new TypeToken<List<Task>>() {
+        }.getType());
+        assertEquals(List.of(6), tasks.stream().map(Task::getId).collect(Collectors.toList()));
+
+        path = String.format("%s%s/tasks/task?after=5&limit=0", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestGET(URI.create(path)));
+        assertEquals(400, response.statusCode());
+        assertEquals("Параметр limit должен быть положительным числом", response.body());
+
+        path = String.format("%s%s/tasks/task?after=abc", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestGET(URI.create(path)));
+        assertEquals("Некорректный параметр after", response.body());
+    }
+
+    @Test
+    void shouldGetTasksByStatus() throws IOException, InterruptedException {
+        postAllTasks();
+        path = String.format("%s%s/tasks/subtask?status=IN_PROGRESS", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestGET(URI.create(path)));
+        List<Subtask> subtasks = gson.fromJson(response.body(), new TypeToken<List<Subtask>>() {
+        }.getType());
+        assertEquals(List.of(4), subtasks.stream().map(Task::getId).collect(Collectors.toList()));
+
+        path = String.format("%s%s/tasks/epic?status=IN_PROGRESS", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestGET(URI.create(path)));
+        List<Epic> epics = gson.fromJson(response.body(), new TypeToken<List<Epic>>() {
+        }.getType());
+        assertEquals(List.of(1), epics.stream().map(Task::getId).collect(Collectors.toList()));
+
+        path = String.format("%s%s/tasks/task?status=DONE", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestGET(URI.create(path)));
+        assertEquals("[]", response.body());
+
+        path = String.format("%s%s/tasks/task?status=FINISHED", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestGET(URI.create(path)));
+        assertEquals(400, response.statusCode());
+        assertEquals("Некорректный параметр status", response.body());
+    }
+
+    @Test
+    void shouldSearchTasks() throws IOException, InterruptedException {
+        postAllTasks();
+        path = String.format("%s%s/tasks/search?q=%s", PROTOCOL_AND_HOST_NAME, PORT, "special%20sub2");
+        response = getResponse(getRequestGET(URI.create(path)));
+        List<Subtask> subtasks = gson.fromJson(response.body(), new TypeToken<List<Subtask>>() {
+        }.getType());
+        assertEquals(200, response.statusCode());
+        assertEquals(List.of(4), subtasks.stream().map(Task::getId).collect(Collectors.toList()));
+
+        path = String.format("%s%s/tasks/search?q=relax", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestGET(URI.create(path)));
+        List<Task> tasks = gson.fromJson(response.body(), new TypeToken<List<Task>>() {
+        }.getType());
+        assertEquals(List.of(5), tasks.stream().map(Task::getId).collect(Collectors.toList()));
+
+        path = String.format("%s%s/tasks/search", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestGET(URI.create(path)));
+        assertEquals(400, response.statusCode());
+        assertEquals("Не задан параметр q", response.body());
+    }
+
+    @Test
+    void shouldGetTasksInTimeRange() throws IOException, InterruptedException {
+        postAllTasks();
+        path = String.format("%s%s/tasks/?from=23.03.2023&to=23.08.2023", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestGET(URI.create(path)));
+        List<Task> tasks = gson.fromJson(response.body(), new TypeToken<List<Task>>() {
+        }.getType());
+        assertEquals(200, response.statusCode());
+        assertEquals(List.of(6, 3), tasks.stream().map(Task::getId).collect(Collectors.toList()));
+
+        path = String.format("%s%s/tasks/?from=23.08.2023", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestGET(URI.create(path)));
+        assertEquals(400, response.statusCode());
+
+        path = String.format("%s%s/tasks/?from=24.08.2023&to=23.08.2023", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestGET(URI.create(path)));
+        assertEquals(400, response.statusCode());
+    }
+
+    @Test
+    void shouldFindSlotAndScheduleTasks() throws IOException, InterruptedException {
+        postAllTasks();
+        path = String.format("%s%s/tasks/slot?duration=1440&from=22.03.2023", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestGET(URI.create(path)));
+        assertEquals(200, response.statusCode());
+        assertEquals("\"25.03.2023\"", response.body());
+
+        path = String.format("%s%s/tasks/schedule?from=22.03.2023", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestPOST(URI.create(path), "[{\"name\": \"first\", \"duration\": 60}, " +
+                "{\"name\": \"second\", \"duration\": 60}]"));
+        assertEquals(201, response.statusCode());
+        List<Task> tasks = gson.fromJson(response.body(), new TypeToken<List<Task>>() {
+        }.getType());
+        assertEquals(List.of(7, 8), tasks.stream().map(Task::getId).collect(Collectors.toList()));
+        assertEquals(List.of("23.03.2023", "25.03.2023"), tasks.stream()
+                .map(task -> task.getStartTime().format(EpicTest.DATE_FORMATTER)).collect(Collectors.toList()));
+
+        path = String.format("%s%s/tasks/slot?duration=-5&from=22.03.2023", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestGET(URI.create(path)));
+        assertEquals(400, response.statusCode());
+    }
+
+    @Test
+    void shouldScheduleWholeBatchOrNothing() throws IOException, InterruptedException {
+        path = String.format("%s%s/tasks/schedule/?from=01.05.2023", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestPOST(URI.create(path), "[{\"name\": \"first\", \"duration\": 60}, " +
+                "{\"name\": \"second\", \"duration\": -60}]"));
+        assertEquals(400, response.statusCode());
+        assertEquals("Поле duration должно быть неотрицательным числом минут", response.body());
+        path = String.format("%s%s/tasks/task", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestGET(URI.create(path)));
+        assertEquals("[]", response.body());
+
+        path = String.format("%s%s/tasks/schedule/?from=01.05.2023", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestPOST(URI.create(path), "[{\"name\": \"first\", \"duration\": 2880}, " +
+                "{\"name\": \"second\", \"duration\": 60}]"));
+        assertEquals(201, response.statusCode());
+        List<Task> tasks = gson.fromJson(response.body(), new TypeToken<List<Task>>() {
+        }.getType());
+        assertEquals(List.of("01.05.2023", "04.05.2023"), tasks.stream()
+                .map(task -> task.getStartTime().format(EpicTest.DATE_FORMATTER)).collect(Collectors.toList()));
+
+        path = String.format("%s%s/tasks/scheduled?from=01.05.2023", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestPOST(URI.create(path), "[]"));
+        assertEquals(404, response.statusCode());
+    }
+
     @Test
     void shouldGetEpics() throws IOException, InterruptedException {
         postAllTasks();
@@ -330,6 +480,91 @@ public class HttpTaskServerTest {
         assertEquals("Эпик с идентификатором " + query + " не найден", response.body());
     }
 
+    @Test
+    void shouldReturnUpdatedListsAfterChangeBetweenRepeatedRequests() throws IOException, InterruptedException {
+        postAllTasks();
+        String listPath = String.format("%s%s/tasks/task", PROTOCOL_AND_HOST_NAME, PORT);
+        String prioritizedPath = String.format("%s%s/tasks/", PROTOCOL_AND_HOST_NAME, PORT);
+        String tasksBefore = getResponse(getRequestGET(URI.create(listPath))).body();
+        String prioritizedBefore = getResponse(getRequestGET(URI.create(prioritizedPath))).body();
+        assertEquals(tasksBefore, getResponse(getRequestGET(URI.create(listPath))).body());
+        assertEquals(prioritizedBefore, getResponse(getRequestGET(URI.create(prioritizedPath))).body());
+
+        path = String.format("%s%s/tasks/task/?id=5", PROTOCOL_AND_HOST_NAME, PORT);
+        getResponse(getRequestDELETE(URI.create(path)));
+        List<Task> tasks = gson.fromJson(getResponse(getRequestGET(URI.create(listPath))).body(),
+                new TypeToken<List<Task>>() {
+                }.getType());
+        assertEquals(List.of(6), tasks.stream().map(Task::getId).collect(Collectors.toList()));
+        List<Task> prioritized = gson.fromJson(getResponse(getRequestGET(URI.create(prioritizedPath))).body(),
+                new TypeToken<List<Task>>() {
+                }.getType());
+        assertTrue(prioritized.stream().noneMatch(task -> task.getId() == 5));
+    }
+
+    @Test
+    void shouldKeepSeparateHistoryForEachUser() throws IOException, InterruptedException {
+        httpTaskServer.stop();
+        UserHistoryStore userHistories = new UserHistoryStore(
+                new KVHistoryStorage(URI.create("http://localhost:" + KVServer.PORT)), 2, 1, Duration.ofMinutes(10));
+        httpTaskServer = new HttpTaskServer(Managers.getDefault(), userHistories);
+        httpTaskServer.start();
+        postAllTasks();
+        getResponse(getRequestGET(URI.create(PROTOCOL_AND_HOST_NAME + PORT + "/tasks/task/?id=5"), "alice"));
+        getResponse(getRequestGET(URI.create(PROTOCOL_AND_HOST_NAME + PORT + "/tasks/epic/?id=1"), "alice"));
+        getResponse(getRequestGET(URI.create(PROTOCOL_AND_HOST_NAME + PORT + "/tasks/subtask/?id=3"), "alice"));
+        response = getResponse(getRequestGET(URI.create(PROTOCOL_AND_HOST_NAME + PORT + "/tasks/task/?id=6"), "bob"));
+        assertEquals(200, response.statusCode());
+
+        // история alice вытеснена в KV при обращении bob и загружается обратно
+        assertEquals(1, userHistories.getEvictedUsersCount());
+        String historyPath = PROTOCOL_AND_HOST_NAME + PORT + "/tasks/history";
+        assertEquals(List.of(1, 3), gson.fromJson(getResponse(getRequestGET(URI.create(historyPath), "alice")).body(),
+                new TypeToken<List<Integer>>() {
+                }.getType()));
+        assertEquals(List.of(6), gson.fromJson(getResponse(getRequestGET(URI.create(historyPath), "bob")).body(),
+                new TypeToken<List<Integer>>() {
+                }.getType()));
+        assertEquals("[]", getResponse(getRequestGET(URI.create(historyPath))).body());
+
+        getResponse(getRequestDELETE(URI.create(PROTOCOL_AND_HOST_NAME + PORT + "/tasks/task/?id=6")));
+        assertEquals("[]", getResponse(getRequestGET(URI.create(historyPath), "bob")).body());
+    }
+
+    @Test
+    void shouldGetHotTasks() throws IOException, InterruptedException {
+        postAllTasks();
+        getResponse(getRequestGET(URI.create(PROTOCOL_AND_HOST_NAME + PORT + "/tasks/subtask/?id=4")));
+        getResponse(getRequestGET(URI.create(PROTOCOL_AND_HOST_NAME + PORT + "/tasks/subtask/?id=4")));
+        getResponse(getRequestGET(URI.create(PROTOCOL_AND_HOST_NAME + PORT + "/tasks/task/?id=5")));
+        path = String.format("%s%s/tasks/hot?limit=1", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestGET(URI.create(path)));
+        assertEquals(200, response.statusCode());
+        List<Subtask> subtasks = gson.fromJson(response.body(), new TypeToken<List<Subtask>>() {
+        }.getType());
+        assertEquals(List.of(4), subtasks.stream().map(Task::getId).collect(Collectors.toList()));
+
+        path = String.format("%s%s/tasks/hot?limit=0", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestGET(URI.create(path)));
+        assertEquals(400, response.statusCode());
+    }
+
+    @Test
+    void shouldCountUserViewsInHotTasks() throws IOException, InterruptedException {
+        postAllTasks();
+        for (int i = 0; i < 3; i++) {
+            getResponse(getRequestGET(URI.create(PROTOCOL_AND_HOST_NAME + PORT + "/tasks/task/?id=5"), "alice"));
+        }
+        getResponse(getRequestGET(URI.create(PROTOCOL_AND_HOST_NAME + PORT + "/tasks/subtask/?id=4")));
+        path = String.format("%s%s/tasks/hot?limit=2", PROTOCOL_AND_HOST_NAME, PORT);
+        response = getResponse(getRequestGET(URI.create(path)));
+        List<Task> tasks = gson.fromJson(response.body(), new TypeToken<List<Task>>() {
+        }.getType());
+        assertEquals(List.of(5, 4), tasks.stream().map(Task::getId).collect(Collectors.toList()));
+        assertEquals("[4]", getResponse(getRequestGET(URI.create(PROTOCOL_AND_HOST_NAME + PORT
+                + "/tasks/history"))).body().replaceAll("\\s", ""));
+    }
+
     @Test
     void shouldDeleteAllTask() throws IOException, InterruptedException {
         postAllTasks();
@@ -509,6 +744,10 @@ public class HttpTaskServerTest {
         return HttpRequest.newBuilder().uri(url).GET().build();
     }
 
+    private HttpRequest getRequestGET(URI url, String userId) {
+        return HttpRequest.newBuilder().uri(url).header("X-User-Id", userId).GET().build();
+    }
+
     private HttpRequest getRequestDELETE(URI url) {
         return HttpRequest.newBuilder().uri(url).DELETE().build();
     }
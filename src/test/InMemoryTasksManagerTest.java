@@ -1,12 +1,249 @@
 package test;
 
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import model.TaskType;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import service.InMemoryTaskManager;
+import service.ManagerSaveException;
+import service.TaskEvent;
+import service.TaskEventBus;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static model.TaskStatus.DONE;
+import static model.TaskStatus.NEW;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class InMemoryTasksManagerTest extends TaskManagerTest<InMemoryTaskManager> {
 
     @BeforeEach
     void beforeEach() {
         manager = new InMemoryTaskManager();
+        manager.setVerificationEnabled(true);
+    }
+
+    @Test
+    void shouldFindSameSlotAsFullScanAfterRandomChanges() {
+        Random random = new Random(7);
+        LocalDate origin = LocalDate.parse("01.01.2023", EpicTest.DATE_FORMATTER);
+        for (int i = 0; i < 500; i++) {
+            List<Task> tasks = manager.getPrioritizedTasks();
+            if (!tasks.isEmpty() && random.nextInt(3) == 0) {
+                manager.deleteTaskById(tasks.get(random.nextInt(tasks.size())).getId());
+            } else {
+                Duration duration = Duration.ofMinutes(random.nextInt(3 * 1440));
+                LocalDate slot = manager.findEarliestSlot(duration, origin.plusDays(random.nextInt(400)));
+                manager.createTask(new Task("Задача " + i, "", NEW, slot, duration));
+            }
+            Duration duration = Duration.ofMinutes(random.nextInt(4 * 1440));
+            LocalDate notBefore = origin.plusDays(random.nextInt(420));
+            assertEquals(findSlotByFullScan(manager.getPrioritizedTasks(), duration, notBefore),
+                    manager.findEarliestSlot(duration, notBefore));
+        }
+    }
+
+    @Test
+    void shouldDetectSameConflictsByCalendarAndIntervalIndex() {
+        Random random = new Random(11);
+        LocalDate origin = LocalDate.parse("01.01.2023", EpicTest.DATE_FORMATTER);
+        int conflicts = 0;
+        for (int i = 0; i < 3_000; i++) {
+            List<Task> tasks = manager.getPrioritizedTasks();
+            Task task = new Task("Задача " + i, "", NEW, origin.plusDays(random.nextInt(300)),
+                    Duration.ofMinutes(random.nextInt(4) == 0 ? random.nextInt(5 * 1440) : random.nextInt(1440)));
+            try {
+                if (!tasks.isEmpty() && random.nextInt(4) == 0) {
+                    Task oldTask = tasks.get(random.nextInt(tasks.size()));
+                    task.setId(oldTask.getId());
+                    manager.updateTask(task);
+                } else if (!tasks.isEmpty() && random.nextInt(4) == 0) {
+                    manager.deleteTaskById(tasks.get(random.nextInt(tasks.size())).getId());
+                } else {
+                    manager.createTask(task);
+                }
+            } catch (ManagerSaveException ex) {
+                conflicts++;
+            }
+        }
+        assertTrue(conflicts > 0);
+    }
+
+    @Test
+    void shouldPublishChangesWithStateBeforeAndAfter() {
+        List<TaskEvent> events = new ArrayList<>();
+        manager.getEventBus().subscribe(events::add);
+        manager.createEpic(new Epic("Переезд", "")); //#1
+        manager.createSubtask(new Subtask("Собрать коробки", "", NEW, 1)); //#2
+        Subtask subtask = manager.getSubtaskById(2);
+        subtask.setTaskStatus(DONE);
+        manager.updateSubtask(subtask);
+        manager.deleteEpicById(1);
+
+        assertEquals(List.of("CREATED EPIC 1", "CREATED SUBTASK 2", "UPDATED EPIC 1", "UPDATED SUBTASK 2",
+                "UPDATED EPIC 1", "DELETED SUBTASK 2", "DELETED EPIC 1"), describe(events));
+        TaskEvent epicDone = events.get(4);
+        assertEquals(NEW, epicDone.getBefore().getTaskStatus());
+        assertEquals(DONE, epicDone.getAfter().getTaskStatus());
+        assertEquals(List.of(2), ((Epic) events.get(2).getAfter()).getSubtasks());
+        assertEquals(List.of(), ((Epic) events.get(2).getBefore()).getSubtasks());
+        assertNull(events.get(6).getAfter());
+        assertEquals(TaskType.EPIC, events.get(6).getType());
+    }
+
+    @Test
+    void shouldPublishOneEventPerChangeOfBatchAndDeleteAll() {
+        List<TaskEvent> events = new ArrayList<>();
+        manager.getEventBus().subscribe(events::add);
+        Epic epic = new Epic("Переезд", "");
+        manager.createEpic(epic);
+        Subtask first = new Subtask("Собрать коробки", "", NEW, epic.getId());
+        Subtask second = new Subtask("Упаковать кошку", "", DONE, epic.getId());
+        manager.createAll(List.of(first, second, new Task("Прочитать книгу", "", NEW)));
+        manager.deleteAllSubtasks();
+
+        assertEquals(List.of("CREATED EPIC 1", "CREATED SUBTASK 2", "CREATED SUBTASK 3", "CREATED TASK 4",
+                "UPDATED EPIC 1", "DELETED SUBTASK 2", "DELETED SUBTASK 3", "UPDATED EPIC 1"), describe(events));
+        assertEquals(List.of(2, 3), ((Epic) events.get(4).getAfter()).getSubtasks());
+        assertEquals(List.of(), ((Epic) events.get(7).getAfter()).getSubtasks());
+    }
+
+    @Test
+    void shouldNotBlockWritesWhenAsyncSubscriberFallsBehind() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch delivered = new CountDownLatch(4);
+        TaskEventBus.Subscription subscription = manager.getEventBus().subscribeAsync(event -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            delivered.countDown();
+        }, 3);
+        manager.createTask(new Task("Задача 0", "", NEW));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < 10; i++) {
+            manager.createTask(new Task("Задача " + i, "", NEW));
+        }
+        // первое событие уже у подписчика, ещё три ждут в очереди
+        assertEquals(6, subscription.getDroppedCount());
+        release.countDown();
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        subscription.unsubscribe();
+        manager.createTask(new Task("После отписки", "", NEW));
+        assertEquals(6, subscription.getDroppedCount());
+    }
+
+    @Test
+    void shouldChangeVersionOnceForCreateOnlyBatch() {
+        createAll();
+        long version = manager.getVersion();
+        List<Task> views = manager.getTasksView();
+        manager.createAll(List.of(new Task("Купить хлеб", "", NEW), new Task("Сходить в кино", "", NEW),
+                new Task("Позвонить маме", "", NEW)));
+
+        assertEquals(version + 1, manager.getVersion());
+        assertEquals(views.size() + 3, manager.getTasksView().size());
+    }
+
+    @Test
+    void shouldApplyWholeChangeWhenSubscriberThrows() {
+        List<TaskEvent> events = new ArrayList<>();
+        manager.getEventBus().subscribe(event -> {
+            throw new ManagerSaveException("Ошибка записи");
+        });
+        manager.getEventBus().subscribe(events::add);
+        LocalDate date = LocalDate.of(2023, 5, 1);
+        Task task = new Task("Прочитать книгу", "", NEW, date, Duration.ofDays(1));
+
+        assertThrows(ManagerSaveException.class, () -> manager.createTask(task));
+        assertThrows(ManagerSaveException.class, () -> manager.createAll(List.of(
+                new Task("Купить хлеб", "", NEW), new Task("Сходить в кино", "", NEW))));
+
+        assertEquals(List.of("CREATED TASK 1", "CREATED TASK 2", "CREATED TASK 3"), describe(events));
+        assertEquals(3, manager.getPrioritizedTasks().size());
+        assertEquals(date.plusDays(2), manager.findEarliestSlot(Duration.ofDays(1), date));
+        assertThrows(ManagerSaveException.class,
+                () -> manager.createTask(new Task("Пересечение", "", NEW, date, Duration.ofDays(1))));
+    }
+
+    @Test
+    void shouldDropEventsOfOperationFailedVerification() {
+        AtomicBoolean isBroken = new AtomicBoolean();
+        // при isBroken проверка эпика пересчитывает его без подзадач и находит расхождение
+        manager = new InMemoryTaskManager() {
+            @Override
+            public ArrayList<Subtask> getListOfAllEpicSubtasks(Epic epic) {
+                return isBroken.get() ? new ArrayList<>() : super.getListOfAllEpicSubtasks(epic);
+            }
+        };
+        manager.setVerificationEnabled(true);
+        Epic epic = new Epic("Переезд", "");
+        manager.createEpic(epic);
+        List<TaskEvent> events = new ArrayList<>();
+        manager.getEventBus().subscribe(events::add);
+
+        isBroken.set(true);
+        assertThrows(IllegalStateException.class,
+                () -> manager.createSubtask(new Subtask("Собрать коробки", "", DONE, epic.getId())));
+        isBroken.set(false);
+        manager.createTask(new Task("Прочитать книгу", "", NEW));
+
+        assertEquals(List.of("CREATED TASK 3"), describe(events));
+    }
+
+    @Test
+    void shouldCountFailuresOfAsyncSubscriber() throws InterruptedException {
+        CountDownLatch delivered = new CountDownLatch(2);
+        TaskEventBus.Subscription subscription = manager.getEventBus().subscribeAsync(event -> {
+            delivered.countDown();
+            throw new IllegalStateException();
+        }, 10);
+        manager.createTask(new Task("Задача 1", "", NEW));
+        manager.createTask(new Task("Задача 2", "", NEW));
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 50 && subscription.getFailedCount() < 2; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, subscription.getFailedCount());
+        assertEquals(0, subscription.getDroppedCount());
+        subscription.unsubscribe();
+    }
+
+    private static List<String> describe(List<TaskEvent> events) {
+        List<String> descriptions = new ArrayList<>();
+        for (TaskEvent event : events) {
+            descriptions.add(event.getKind() + " " + event.getType() + " " + event.getId());
+        }
+        return descriptions;
+    }
+
+    private static LocalDate findSlotByFullScan(List<Task> tasks, Duration duration, LocalDate notBefore) {
+        for (LocalDate date = notBefore; ; date = date.plusDays(1)) {
+            LocalDateTime start = LocalDateTime.of(date, LocalTime.MIN);
+            LocalDateTime end = start.plus(duration);
+            boolean isFree = tasks.stream().noneMatch(task -> !task.getEndTime().isBefore(start)
+                    && !LocalDateTime.of(task.getStartTime(), LocalTime.MIN).isAfter(end));
+            if (isFree) {
+                return date;
+            }
+        }
     }
 }
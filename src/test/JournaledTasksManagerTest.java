@@ -0,0 +1,282 @@
+package test;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.Durability;
+import service.JournaledTasksManager;
+import service.ManagerSaveException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static model.TaskStatus.DONE;
+import static model.TaskStatus.NEW;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JournaledTasksManagerTest extends TaskManagerTest<JournaledTasksManager> {
+    Path directory;
+    Path path;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        directory = Files.createTempDirectory("journal");
+        path = directory.resolve("backup.bin");
+        manager = JournaledTasksManager.open(path);
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        manager.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void shouldRestoreTasksAndHistoryFromJournal() {
+        createAll();
+        manager.getTaskById(2);
+        manager.getEpicById(epicId);
+        manager.getTaskById(1);
+        List<Task> tasks = manager.getListOfAllTasks();
+        List<Epic> epics = manager.getListOfAllEpics();
+        List<Subtask> subtasks = manager.getListOfAllSubtasks();
+        List<Task> history = manager.getHistory();
+
+        manager.close();
+        assertFalse(Files.exists(path));
+        manager = JournaledTasksManager.open(path);
+
+        assertEquals(tasks, manager.getListOfAllTasks());
+        assertEquals(epics, manager.getListOfAllEpics());
+        assertEquals(subtasks, manager.getListOfAllSubtasks());
+        assertEquals(history, manager.getHistory());
+    }
+
+    @Test
+    void shouldReplayUpdatesAndDeletions() {
+        createAll();
+        Subtask subtask = manager.getListOfAllSubtasks().get(0);
+        subtask.setTaskStatus(DONE);
+        manager.updateSubtask(subtask);
+        int deletedId = manager.getListOfAllTasks().get(0).getId();
+        manager.getTaskById(deletedId);
+        manager.deleteTaskById(deletedId);
+        Epic epic = manager.getEpicById(epicId);
+
+        manager.close();
+        manager = JournaledTasksManager.open(path);
+
+        assertEquals(DONE, manager.getSubtaskById(subtask.getId()).getTaskStatus());
+        assertEquals(epic.getTaskStatus(), manager.getEpicById(epicId).getTaskStatus());
+        assertNull(manager.getTaskById(deletedId));
+        Task task = new Task("Новая", "", NEW);
+        manager.createTask(task);
+        assertTrue(task.getId() > subtask.getId());
+    }
+
+    @Test
+    void shouldWriteSnapshotAndTruncateJournalWhenThresholdReached() throws IOException {
+        manager.close();
+        manager = JournaledTasksManager.open(path, 5);
+        createAll();
+        manager.getTaskById(1);
+        List<Task> tasks = manager.getListOfAllTasks();
+        List<Task> history = manager.getHistory();
+
+        manager.close();
+        assertTrue(Files.exists(path));
+        assertFalse(Files.exists(Path.of(path + ".log.old")));
+        manager = JournaledTasksManager.open(path, 5);
+
+        assertEquals(tasks, manager.getListOfAllTasks());
+        assertEquals(history, manager.getHistory());
+    }
+
+    @Test
+    void shouldIgnoreTornLastRecord() throws IOException {
+        createAll();
+        List<Task> tasks = manager.getListOfAllTasks();
+
+        manager.close();
+        Files.write(Path.of(path + ".log"), new byte[]{'+', 0, 0, 0, 10, 'x'}, StandardOpenOption.APPEND);
+        manager = JournaledTasksManager.open(path);
+
+        assertEquals(tasks, manager.getListOfAllTasks());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenStringLengthInCompleteRecordIsCorrupted() throws IOException {
+        createAll();
+        manager.close();
+        // запись дописана целиком, но длина строки внутри неё больше самой записи
+        ByteBuffer record = ByteBuffer.allocate(1 + 2 * Integer.BYTES + Integer.BYTES);
+        record.put((byte) '+').putInt(2 * Integer.BYTES).putInt(1000).putInt(-1);
+        Files.write(Path.of(path + ".log"), record.array(), StandardOpenOption.APPEND);
+        Files.write(Path.of(path + ".log"), new byte[]{'v', 0, 0, 0, 4, 0, 0, 0, 1}, StandardOpenOption.APPEND);
+
+        assertThrows(ManagerSaveException.class, () -> JournaledTasksManager.open(path));
+    }
+
+    @Test
+    void shouldThrowExceptionWhenDurationInRecordIsCorrupted() throws IOException {
+        createAll();
+        manager.close();
+        int length = 2 * Integer.BYTES + 40;
+        ByteBuffer record = ByteBuffer.allocate(1 + Integer.BYTES + length);
+        record.put((byte) '+').putInt(length).putInt(-1).putInt(-1);
+        // id, тип, статус, резерв, имя, описание, эпик, начало, длительность, окончание эпика
+        record.putInt(100).put((byte) 0).put((byte) 0).putShort((short) 0).putInt(0).putInt(1).putInt(0).putInt(0)
+                .putLong(Long.MAX_VALUE).putLong(0);
+        Files.write(Path.of(path + ".log"), record.array(), StandardOpenOption.APPEND);
+
+        assertThrows(ManagerSaveException.class, () -> JournaledTasksManager.open(path));
+    }
+
+    @Test
+    void shouldCompleteDurableFutureAfterJournalIsWritten() throws Exception {
+        createAll();
+        manager.getTaskById(1);
+        manager.whenDurable().get(5, TimeUnit.SECONDS);
+
+        JournaledTasksManager reader = JournaledTasksManager.open(path);
+        assertEquals(manager.getListOfAllSubtasks(), reader.getListOfAllSubtasks());
+        assertEquals(manager.getHistory(), reader.getHistory());
+        reader.close();
+    }
+
+    @Test
+    void shouldWriteJournalAfterIntervalWhenIntervalPolicy() throws Exception {
+        manager.close();
+        manager = JournaledTasksManager.open(path, Durability.every(Duration.ofSeconds(1)));
+        createAll();
+        CompletableFuture<Void> durable = manager.whenDurable();
+        assertFalse(durable.isDone());
+
+        durable.get(5, TimeUnit.SECONDS);
+        JournaledTasksManager reader = JournaledTasksManager.open(path);
+        assertEquals(manager.getListOfAllEpics(), reader.getListOfAllEpics());
+        reader.close();
+    }
+
+    @Test
+    void shouldRestoreJournalWrittenWithoutForce() {
+        manager.close();
+        manager = JournaledTasksManager.open(path, Durability.osManaged());
+        createAll();
+        List<Task> tasks = manager.getListOfAllTasks();
+
+        manager.close();
+        manager = JournaledTasksManager.open(path, Durability.osManaged());
+
+        assertEquals(tasks, manager.getListOfAllTasks());
+    }
+
+    @Test
+    void shouldKeepOldJournalWhenSnapshotFails() throws IOException {
+        manager.close();
+        Path tempPath = Files.createDirectory(Path.of(path + ".tmp"));
+        manager = JournaledTasksManager.open(path, 2);
+        manager.createTask(new Task("Задача 1", "", NEW));
+        manager.createTask(new Task("Задача 2", "", NEW));
+        assertThrows(ManagerSaveException.class, manager::close);
+        assertThrows(ExecutionException.class, () -> manager.whenDurable().get(5, TimeUnit.SECONDS));
+
+        // второе сжатие тоже не удаётся: записи первого журнала не должны пропасть
+        manager = JournaledTasksManager.open(path, 2);
+        manager.createTask(new Task("Задача 3", "", NEW));
+        manager.createTask(new Task("Задача 4", "", NEW));
+        assertThrows(ManagerSaveException.class, manager::close);
+
+        Files.delete(tempPath);
+        manager = JournaledTasksManager.open(path, 2);
+        assertEquals(4, manager.getListOfAllTasks().size());
+    }
+
+    @Test
+    void shouldKeepCommasAndLineBreaksInNames() {
+        manager.close();
+        manager = JournaledTasksManager.open(path, 2);
+        Task task = new Task("Купить хлеб, молоко", "первая строка\nвторая, третья", NEW);
+        manager.createTask(task);
+        manager.createTask(new Task("Ещё одна, с запятой", "", NEW));
+        manager.createTask(new Task("После снимка, тоже", "", NEW));
+        List<Task> tasks = manager.getListOfAllTasks();
+
+        manager.close();
+        manager = JournaledTasksManager.open(path, 2);
+
+        assertEquals(tasks, manager.getListOfAllTasks());
+        assertEquals(task.getDescription(), manager.getTaskById(task.getId()).getDescription());
+    }
+
+    @Test
+    void shouldExportAndImportCsv() {
+        createAll();
+        manager.getSubtaskById(5);
+        manager.getTaskById(1);
+        List<Epic> epics = manager.getListOfAllEpics();
+        List<Task> history = manager.getHistory();
+        Path csv = directory.resolve("export.csv");
+        manager.exportCsv(csv);
+        manager.close();
+
+        manager = JournaledTasksManager.importCsv(csv, directory.resolve("imported.bin"));
+
+        assertEquals(getExpectedTasks(), manager.getListOfAllTasks());
+        assertEquals(epics, manager.getListOfAllEpics());
+        assertEquals(getExpectedSubtasks(), manager.getListOfAllSubtasks());
+        assertEquals(history, manager.getHistory());
+        manager.close();
+        manager = JournaledTasksManager.open(directory.resolve("imported.bin"));
+        assertEquals(epics, manager.getListOfAllEpics());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenSnapshotIsNotBinary() throws IOException {
+        manager.close();
+        Files.writeString(path, "id,type,name,status,description,epic,startTime,duration,endTime\n",
+                StandardCharsets.UTF_8);
+
+        assertThrows(ManagerSaveException.class, () -> JournaledTasksManager.open(path));
+        manager = JournaledTasksManager.open(directory.resolve("other.bin"));
+    }
+
+    @Test
+    void shouldThrowExceptionWhenSnapshotCountsAreCorrupted() throws IOException {
+        manager.close();
+        manager = JournaledTasksManager.open(path, 1);
+        createAll();
+        manager.close();
+        byte[] snapshot = Files.readAllBytes(path);
+
+        // число строк в заголовке: отрицательное и заведомо больше размера файла
+        for (int count : new int[]{-1, Integer.MAX_VALUE}) {
+            ByteBuffer.wrap(snapshot).putInt(12, count);
+            Files.write(path, snapshot);
+            assertThrows(ManagerSaveException.class, () -> JournaledTasksManager.open(path));
+        }
+        manager = JournaledTasksManager.open(directory.resolve("other.bin"));
+    }
+}
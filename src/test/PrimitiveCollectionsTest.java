@@ -0,0 +1,171 @@
+package test;
+
+import org.junit.jupiter.api.Test;
+import util.IntHashSet;
+import util.IntIntHashMap;
+import util.IntObjectHashMap;
+import util.PersistentIntMap;
+import util.SortedIntSet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PrimitiveCollectionsTest {
+
+    @Test
+    void shouldBehaveLikeHashMapOnRandomPutsAndRemoves() {
+        IntObjectHashMap<String> map = new IntObjectHashMap<>();
+        Map<Integer, String> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(2_000) - 1_000;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+            }
+        }
+        assertEquals(expected, map);
+        assertEquals(expected.size(), map.size());
+        for (int key = -1_000; key < 1_000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(0));
+    }
+
+    @Test
+    void shouldBehaveLikeHashMapWithIntValuesOnRandomPutsAndRemoves() {
+        IntIntHashMap map = new IntIntHashMap(-1);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(2_000) - 1_000;
+            if (i % 1_000 == 0) {
+                key = Integer.MIN_VALUE;
+            }
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.getOrDefault(key, -1), map.remove(key));
+                expected.remove(key);
+            } else {
+                assertEquals(expected.getOrDefault(key, -1), map.put(key, i));
+                expected.put(key, i);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (int key = -1_000; key < 1_000; key++) {
+            assertEquals(expected.getOrDefault(key, -1), map.get(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+        assertEquals(expected.getOrDefault(Integer.MIN_VALUE, -1), map.get(Integer.MIN_VALUE));
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(-1, map.get(0));
+    }
+
+    @Test
+    void shouldBehaveLikeTreeSetOnRandomAddsAndRemoves() {
+        SortedIntSet set = new SortedIntSet();
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            int value = random.nextInt(2_000) - 1_000;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                assertEquals(expected.add(value), set.add(value));
+            }
+        }
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), set.toArray());
+        for (int value = -1_001; value <= 1_000; value++) {
+            Integer higher = expected.higher(value);
+            int index = set.indexAfter(value);
+            assertEquals(higher == null ? set.size() : expected.headSet(higher).size(), index);
+            Integer ceiling = expected.ceiling(value);
+            int ceilingIndex = ceiling == null ? set.size() : expected.headSet(ceiling).size();
+            assertEquals(ceilingIndex, set.indexAtLeast(value, random.nextInt(ceilingIndex + 1)));
+        }
+        int[] removed = expected.stream().filter(value -> value % 3 == 0).mapToInt(Integer::intValue).toArray();
+        expected.removeIf(value -> value % 3 == 0);
+        set.removeAll(removed);
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), new SortedIntSet(set).toArray());
+    }
+
+    @Test
+    void shouldBehaveLikeHashSetOnRandomAddsAndRemoves() {
+        IntHashSet set = new IntHashSet();
+        Set<Integer> expected = new HashSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int value = random.nextInt(2_000) - 1_000;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                assertEquals(expected.add(value), set.add(value));
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).sorted().toArray(), set.toSortedArray());
+        assertEquals(set, new IntHashSet(set));
+    }
+
+    @Test
+    void shouldBehaveLikeTreeMapAndKeepOldVersionsOfPersistentMap() {
+        PersistentIntMap<String> map = PersistentIntMap.empty();
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        List<PersistentIntMap<String>> versions = new ArrayList<>();
+        List<TreeMap<Integer, String>> expectedVersions = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(2_000) - 1_000;
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                expected.put(key, "v" + i);
+                map = map.put(key, "v" + i);
+            }
+            if (i % 1_000 == 0) {
+                versions.add(map);
+                expectedVersions.add(new TreeMap<>(expected));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(new ArrayList<>(expected.values()), map.values());
+        for (int key = -1_001; key <= 1_000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(new ArrayList<>(expected.tailMap(key, false).values()).subList(0,
+                    Math.min(5, expected.tailMap(key, false).size())), map.valuesAfter(key, 5));
+        }
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(new ArrayList<>(expectedVersions.get(i).values()), versions.get(i).values());
+        }
+        assertTrue(PersistentIntMap.<String>empty().isEmpty());
+    }
+
+    @Test
+    void shouldStoreMinValueInIntHashSet() {
+        IntHashSet set = new IntHashSet();
+        assertTrue(set.add(Integer.MIN_VALUE));
+        assertFalse(set.add(Integer.MIN_VALUE));
+        assertTrue(set.contains(Integer.MIN_VALUE));
+        assertEquals(1, set.size());
+        assertTrue(set.remove(Integer.MIN_VALUE));
+        assertTrue(set.isEmpty());
+    }
+}
@@ -0,0 +1,123 @@
+package test;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.ManagerSaveException;
+import service.ShardedTaskManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static model.TaskStatus.DONE;
+import static model.TaskStatus.NEW;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardedTaskManagerTest extends TaskManagerTest<ShardedTaskManager> {
+    static final int SHARDS = 4;
+    static final int THREADS = 8;
+    static final int TASKS_PER_THREAD = 50;
+
+    @BeforeEach
+    void beforeEach() {
+        manager = new ShardedTaskManager(SHARDS);
+    }
+
+    @AfterEach
+    void afterEach() {
+        manager.shutdown();
+    }
+
+    @Test
+    void shouldRejectIntersectionWithTaskFromAnotherShard() {
+        manager.createTask(new Task("Прочитать книгу", "", NEW,
+                LocalDate.parse("18.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(120L))); //#1
+        manager.createEpic(new Epic("Переезд", "")); //#2
+        Subtask subtask = new Subtask("Собрать коробки", "", NEW, 2,
+                LocalDate.parse("18.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(60L));
+        assertThrows(ManagerSaveException.class, () -> manager.createSubtask(subtask));
+
+        manager.deleteTaskById(1);
+        manager.createSubtask(subtask); //#3
+        assertEquals(LocalDate.parse("19.07.2023", EpicTest.DATE_FORMATTER),
+                manager.findEarliestSlot(Duration.ofMinutes(60L), LocalDate.parse("18.07.2023",
+                        EpicTest.DATE_FORMATTER)));
+    }
+
+    @Test
+    void shouldMoveSubtaskToEpicOfAnotherShardAndKeepHistory() {
+        createAll();
+        manager.getSubtaskById(6);
+        Subtask moved = manager.getSubtaskById(6);
+        moved.setEpicId(4);
+        manager.updateSubtask(moved);
+
+        assertEquals(List.of(5), manager.getEpicById(3).getSubtasks());
+        assertEquals(List.of(6), manager.getEpicById(4).getSubtasks());
+        assertEquals(DONE, manager.getEpicById(4).getTaskStatus());
+        assertEquals(moved, manager.getSubtaskById(6));
+        assertTrue(manager.getHistory().stream().anyMatch(task -> task.getId() == 6));
+        manager.deleteEpicById(4);
+        assertEquals(List.of(5), manager.getListOfAllSubtasks().stream().map(Task::getId)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void shouldCreateFromSeveralThreadsWithUniqueIdsAndNoIntersections() throws Exception {
+        Epic epic = new Epic("Переезд", "");
+        manager.createEpic(epic);
+        List<Callable<Void>> jobs = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            jobs.add(() -> {
+                for (int j = 0; j < TASKS_PER_THREAD; j++) {
+                    // все потоки претендуют на одни и те же дни
+                    LocalDate day = LocalDate.of(2023, 1, 1).plusDays(j);
+                    try {
+                        if (j % 2 == 0) {
+                            manager.createTask(new Task("task", "", NEW, day, Duration.ofMinutes(60L)));
+                        } else {
+                            manager.createSubtask(new Subtask("subtask", "", DONE, epic.getId(), day,
+                                    Duration.ofMinutes(60L)));
+                        }
+                    } catch (ManagerSaveException ignored) {
+                        // пересечение во времени
+                    }
+                    manager.getPrioritizedTasks();
+                }
+                return null;
+            });
+        }
+        runAll(jobs);
+
+        List<Task> prioritized = manager.getPrioritizedTasks();
+        assertEquals(TASKS_PER_THREAD, prioritized.size());
+        assertEquals(TASKS_PER_THREAD, prioritized.stream().map(Task::getStartTime)
+                .collect(Collectors.toSet()).size());
+        assertEquals(TASKS_PER_THREAD + 1, manager.getTasksView().size() + manager.getSubtasksView().size()
+                + manager.getEpicsView().size());
+        assertEquals(TASKS_PER_THREAD / 2, manager.getEpicById(epic.getId()).getSubtasks().size());
+    }
+
+    void runAll(List<Callable<Void>> jobs) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Future<Void> future : executor.invokeAll(jobs)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
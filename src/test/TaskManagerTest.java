@@ -3,11 +3,15 @@ package test;
 import model.Epic;
 import model.Subtask;
 import model.Task;
+import model.TaskType;
 import org.junit.jupiter.api.Test;
 
+import service.BatchOperation;
 import service.ManagerRemoveException;
 import service.ManagerSaveException;
+import service.Managers;
 import service.TaskManager;
+import service.TaskManagerSnapshot;
 
 import java.time.Duration;
 import java.time.LocalDate;
@@ -21,7 +25,9 @@ import static model.TaskStatus.IN_PROGRESS;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -332,6 +338,24 @@ public abstract class TaskManagerTest<T extends TaskManager> {
                 .collect(Collectors.toList()));
     }
 
+    @Test
+    void shouldPutTasksBeforeEpochFirstAndTasksWithoutTimeLastInIdOrder() {
+        manager.createTask(new Task("Без времени", "", NEW)); //#1
+        manager.createTask(new Task("После эпохи", "", NEW,
+                LocalDate.parse("18.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(120L))); //#2
+        manager.createTask(new Task("До эпохи", "", NEW,
+                LocalDate.parse("18.07.1960", EpicTest.DATE_FORMATTER), Duration.ofMinutes(120L))); //#3
+        manager.createTask(new Task("Снова без времени", "", NEW)); //#4
+        manager.createTask(new Task("Далёкое будущее", "", NEW,
+                LocalDate.parse("01.01.9999", EpicTest.DATE_FORMATTER), Duration.ofMinutes(120L))); //#5
+        Task moved = manager.getTaskById(1);
+        moved.setStartTime(LocalDate.parse("17.07.2023", EpicTest.DATE_FORMATTER));
+        moved.setDuration(Duration.ofMinutes(60L));
+        manager.updateTask(moved);
+        assertEquals(List.of(3, 1, 2, 5, 4), manager.getPrioritizedTasks().stream().map(Task::getId)
+                .collect(Collectors.toList()));
+    }
+
     @Test
     void shouldThrowExceptionWhenIntersectionInTimeIsExist() {
         createTasks();
@@ -345,6 +369,393 @@ public abstract class TaskManagerTest<T extends TaskManager> {
         assertEquals("У задачи" + interSubtask + " есть пересечение во времени", ex.getMessage());
     }
 
+    @Test
+    void shouldKeepOldTaskInPrioritizedTasksWhenUpdateHasIntersection() {
+        manager.createTask(new Task("Прочитать книгу", "", NEW,
+                LocalDate.parse("18.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(120L))); //#1
+        manager.createTask(new Task("Протестировать программу", "", NEW,
+                LocalDate.parse("20.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(120L))); //#2
+        Task interTask = manager.getTaskById(2);
+        interTask.setStartTime(LocalDate.parse("18.07.2023", EpicTest.DATE_FORMATTER));
+        assertThrows(ManagerSaveException.class, () -> manager.updateTask(interTask));
+        assertEquals(List.of(1, 2), manager.getPrioritizedTasks().stream().map(Task::getId)
+                .collect(Collectors.toList()));
+        assertEquals(LocalDate.parse("20.07.2023", EpicTest.DATE_FORMATTER), manager.getTaskById(2).getStartTime());
+    }
+
+    @Test
+    void shouldRejectTaskEndingAtStartOfAnotherTask() {
+        manager.createTask(new Task("Прочитать книгу", "", NEW,
+                LocalDate.parse("18.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(1439L))); //#1
+        manager.createTask(new Task("Протестировать программу", "", NEW,
+                LocalDate.parse("19.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(120L))); //#2
+        Task interTask = new Task("Пересечение на границе", "", NEW,
+                LocalDate.parse("17.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(1440L));
+        assertThrows(ManagerSaveException.class, () -> manager.createTask(interTask));
+        assertEquals(2, manager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    void shouldRecalculateEpicTimeAndStatusWhenSubtasksAreUpdatedAndDeleted() {
+        createTasks();
+        createEpics();
+        manager.createSubtask(new Subtask("Собрать коробки", "", NEW, epicId,
+                LocalDate.parse("18.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(120L))); //#5
+        manager.createSubtask(new Subtask("Упаковать кошку", "", DONE, epicId,
+                LocalDate.parse("10.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(11500L))); //#6
+        manager.deleteSubtaskById(6);
+        Epic epic = manager.getEpicById(epicId);
+        assertEquals(NEW, epic.getTaskStatus());
+        assertEquals(LocalDate.parse("18.07.2023", EpicTest.DATE_FORMATTER), epic.getStartTime());
+        assertEquals(Duration.ofMinutes(120L), epic.getDuration());
+
+        Subtask movedSubtask = manager.getSubtaskById(5);
+        movedSubtask.setEpicId(4);
+        movedSubtask.setTaskStatus(DONE);
+        manager.updateSubtask(movedSubtask);
+        assertTrue(manager.getEpicById(epicId).getSubtasks().isEmpty());
+        assertEquals(NEW, manager.getEpicById(epicId).getTaskStatus());
+        assertEquals(List.of(5), manager.getEpicById(4).getSubtasks());
+        assertEquals(DONE, manager.getEpicById(4).getTaskStatus());
+    }
+
+    @Test
+    void shouldReturnSharedReadOnlyViews() {
+        createAll();
+        assertEquals(getExpectedTasks(), manager.getTasksView());
+        assertEquals(getExpectedEpics(), manager.getEpicsView());
+        assertEquals(getExpectedSubtasks(), manager.getSubtasksView());
+        assertEquals(getExpectedSubtasks(), manager.getEpicSubtasksView(3));
+        assertSame(manager.getTaskView(1), manager.getTasksView().get(0));
+        assertSame(manager.getEpicView(3), manager.getEpicView(3));
+        assertEquals(List.of(1, 3), manager.getHistory().stream().map(Task::getId).collect(Collectors.toList()));
+
+        final Task task = manager.getTaskView(1);
+        assertThrows(UnsupportedOperationException.class, () -> task.setName("Другое имя"));
+        final Epic epic = manager.getEpicView(3);
+        assertThrows(UnsupportedOperationException.class, () -> epic.addSubtask(100));
+        assertThrows(UnsupportedOperationException.class, () -> manager.getTasksView().clear());
+        assertEquals(getExpectedTasks().get(0), manager.getTaskById(1));
+        assertEquals(getExpectedEpics().get(0), manager.getEpicById(3));
+    }
+
+    @Test
+    void shouldReturnNewEpicViewAfterEpicIsChanged() {
+        createAll();
+        final Epic oldView = manager.getEpicView(3);
+        manager.deleteSubtaskById(5);
+        final Epic newView = manager.getEpicView(3);
+        assertNotSame(oldView, newView);
+        assertEquals(List.of(5, 6), oldView.getSubtasks());
+        assertEquals(List.of(6), newView.getSubtasks());
+        assertEquals(DONE, newView.getTaskStatus());
+    }
+
+    @Test
+    void shouldReturnPagesAfterCursorInIdOrder() {
+        createAll();
+        manager.createTask(new Task("Третья задача", "", NEW)); //#7
+        assertEquals(List.of(1), manager.getTasksPage(0, 1).stream().map(Task::getId).collect(Collectors.toList()));
+        assertEquals(List.of(2, 7), manager.getTasksPage(1, 10).stream().map(Task::getId).collect(Collectors.toList()));
+        assertEquals(List.of(7), manager.getTasksPage(5, 10).stream().map(Task::getId).collect(Collectors.toList()));
+        assertTrue(manager.getTasksPage(7, 10).isEmpty());
+        assertTrue(manager.getTasksPage(0, 0).isEmpty());
+        assertEquals(getExpectedEpics(), manager.getEpicsPage(0, 2));
+        assertEquals(getExpectedSubtasks().subList(1, 2), manager.getSubtasksPage(5, 2));
+
+        manager.deleteTaskById(2);
+        assertEquals(List.of(7), manager.getTasksPage(1, 10).stream().map(Task::getId).collect(Collectors.toList()));
+        manager.deleteEpicById(3);
+        assertTrue(manager.getSubtasksPage(0, 10).isEmpty());
+        assertEquals(List.of(4), manager.getEpicsPage(0, 10).stream().map(Task::getId).collect(Collectors.toList()));
+        assertThrows(UnsupportedOperationException.class, () -> manager.getTasksPage(0, 10).clear());
+    }
+
+    @Test
+    void shouldCreateAllTasksInOneBatch() {
+        createEpics(); //#1, #2
+        final Task task = new Task("Задача", "", NEW,
+                LocalDate.parse("18.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(120L));
+        final Subtask firstSubtask = new Subtask("Собрать коробки", "", DONE, epicId,
+                LocalDate.parse("19.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(60L));
+        final Subtask secondSubtask = new Subtask("Упаковать кошку", "", NEW, epicId,
+                LocalDate.parse("20.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(30L));
+        manager.createAll(List.of(task, firstSubtask, secondSubtask));
+
+        assertEquals(List.of(3, 4, 5), List.of(task.getId(), firstSubtask.getId(), secondSubtask.getId()));
+        assertEquals(List.of(task, firstSubtask, secondSubtask), manager.getPrioritizedTasks());
+        final Epic epic = manager.getEpicById(epicId);
+        assertEquals(List.of(4, 5), epic.getSubtasks());
+        assertEquals(IN_PROGRESS, epic.getTaskStatus());
+        assertEquals(LocalDate.parse("19.07.2023", EpicTest.DATE_FORMATTER), epic.getStartTime());
+        assertEquals(Duration.ofMinutes(90L), epic.getDuration());
+        assertEquals(secondSubtask.getEndTime(), epic.getEndTime());
+    }
+
+    @Test
+    void shouldNotApplyAnyChangesWhenBatchIsInvalid() {
+        createAll();
+        final Task first = new Task("Первая", "", NEW,
+                LocalDate.parse("18.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(120L));
+        final Task second = new Task("Вторая", "", NEW,
+                LocalDate.parse("18.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(60L));
+        final ManagerSaveException ex = assertThrows(ManagerSaveException.class, () -> manager.applyBatch(List.of(
+                BatchOperation.delete(TaskType.TASK, 1),
+                BatchOperation.create(first),
+                BatchOperation.create(second))));
+        assertTrue(ex.getMessage().endsWith("есть пересечение во времени"));
+        assertThrows(ManagerRemoveException.class, () -> manager.applyBatch(List.of(
+                BatchOperation.delete(TaskType.TASK, 1),
+                BatchOperation.delete(TaskType.TASK, 1))));
+        assertThrows(ManagerSaveException.class, () -> manager.applyBatch(List.of(
+                BatchOperation.delete(TaskType.EPIC, epicId),
+                BatchOperation.create(new Subtask("Подзадача", "", NEW, epicId)))));
+
+        assertEquals(getExpectedTasks(), manager.getListOfAllTasks());
+        assertEquals(getExpectedEpics(), manager.getListOfAllEpics());
+        assertEquals(getExpectedSubtasks(), manager.getListOfAllSubtasks());
+        assertTrue(manager.getPrioritizedTasks().stream().noneMatch(task -> task.getName().equals("Первая")));
+        manager.createTask(new Task("Следующая", "", NEW)); //#7
+        assertEquals(7, manager.getListOfAllTasks().get(2).getId());
+    }
+
+    @Test
+    void shouldApplyMixedBatchWithMovedSubtaskAndFreedTime() {
+        createAll();
+        final Task task = new Task("Задача", "", NEW,
+                LocalDate.parse("18.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(120L));
+        manager.createTask(task); //#7
+        final Task replacement = new Task("На то же время", "", NEW,
+                LocalDate.parse("18.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(60L));
+        final Subtask moved = new Subtask("Упаковать кошку", "", DONE, 4);
+        moved.setId(6);
+        final Task updated = new Task("Прочитать две книги", "", DONE);
+        updated.setId(1);
+        manager.applyBatch(List.of(
+                BatchOperation.delete(TaskType.TASK, task.getId()),
+                BatchOperation.create(replacement),
+                BatchOperation.update(moved),
+                BatchOperation.update(updated),
+                BatchOperation.delete(TaskType.SUBTASK, 5)));
+
+        assertEquals(8, replacement.getId());
+        assertEquals(List.of(1, 2, 8), manager.getListOfAllTasks().stream().map(Task::getId)
+                .collect(Collectors.toList()));
+        assertEquals(updated, manager.getTaskById(1));
+        assertEquals(List.of(), manager.getEpicById(3).getSubtasks());
+        assertEquals(NEW, manager.getEpicById(3).getTaskStatus());
+        assertEquals(List.of(6), manager.getEpicById(4).getSubtasks());
+        assertEquals(DONE, manager.getEpicById(4).getTaskStatus());
+        assertEquals(List.of(replacement, updated, manager.getTaskById(2), moved), manager.getPrioritizedTasks());
+    }
+
+    @Test
+    void shouldKeepStatusIndexesWhenStatusesChange() {
+        createAll();
+        assertEquals(List.of(2), ids(manager.getByStatus(TaskType.TASK, IN_PROGRESS)));
+        assertEquals(List.of(4), ids(manager.getByStatus(TaskType.EPIC, NEW)));
+        assertEquals(List.of(3), ids(manager.getByStatus(TaskType.EPIC, IN_PROGRESS)));
+        assertEquals(1, manager.countByStatus(TaskType.SUBTASK, DONE));
+
+        final Subtask subtask = manager.getSubtaskById(5);
+        subtask.setTaskStatus(DONE);
+        manager.updateSubtask(subtask);
+        assertEquals(List.of(5, 6), ids(manager.getByStatus(TaskType.SUBTASK, DONE)));
+        assertEquals(0, manager.countByStatus(TaskType.SUBTASK, NEW));
+        assertEquals(List.of(3), ids(manager.getByStatus(TaskType.EPIC, DONE)));
+        assertEquals(0, manager.countByStatus(TaskType.EPIC, IN_PROGRESS));
+
+        manager.deleteSubtaskById(6);
+        manager.deleteTaskById(2);
+        assertEquals(List.of(5), ids(manager.getByStatus(TaskType.SUBTASK, DONE)));
+        assertEquals(0, manager.countByStatus(TaskType.TASK, IN_PROGRESS));
+        manager.deleteAllSubtasks();
+        assertEquals(List.of(3, 4), ids(manager.getByStatus(TaskType.EPIC, NEW)));
+        assertEquals(0, manager.countByStatus(TaskType.EPIC, DONE));
+        manager.deleteAllEpics();
+        manager.deleteAllTasks();
+        assertEquals(0, manager.countByStatus(TaskType.EPIC, NEW));
+        assertEquals(0, manager.countByStatus(TaskType.TASK, NEW));
+    }
+
+    @Test
+    void shouldSearchByAllWordsOfNameAndDescription() {
+        createAll();
+        manager.createTask(new Task("Собрать вещи", "Перед переездом", NEW)); //#7
+        assertEquals(List.of(5, 7), ids(manager.search("собрать", 10)));
+        assertEquals(List.of(5), ids(manager.search("собрать", 1)));
+        assertEquals(List.of(3), ids(manager.search("большой ПЕРЕЕЗД", 10)));
+        assertEquals(List.of(4), ids(manager.search("важный, подзадач", 10)));
+        assertTrue(manager.search("переезд кошка", 10).isEmpty());
+        assertTrue(manager.search(" ,. ", 10).isEmpty());
+
+        final Subtask subtask = manager.getSubtaskById(6);
+        subtask.setName("Отвезти кошку к бабушке");
+        manager.updateSubtask(subtask);
+        assertTrue(manager.search("упаковать", 10).isEmpty());
+        assertEquals(List.of(6), ids(manager.search("кошку", 10)));
+        manager.deleteEpicById(3);
+        assertTrue(manager.search("кошку", 10).isEmpty());
+        assertTrue(manager.search("переезд", 10).isEmpty());
+        manager.deleteAllTasks();
+        assertTrue(manager.search("прочитать", 10).isEmpty());
+    }
+
+    @Test
+    void shouldReturnTasksInTimeRange() {
+        createTasks(); //#1, #2
+        createEpics(); //#3, #4
+        manager.createTask(new Task("До периода", "", NEW,
+                LocalDate.parse("09.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(2940L))); //#5
+        manager.createSubtask(new Subtask("Начало периода", "", NEW, epicId,
+                LocalDate.parse("12.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(60L))); //#6
+        manager.createTask(new Task("Конец периода", "", NEW,
+                LocalDate.parse("18.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(60L))); //#7
+        manager.createTask(new Task("После периода", "", NEW,
+                LocalDate.parse("19.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(60L))); //#8
+        final LocalDate from = LocalDate.parse("11.07.2023", EpicTest.DATE_FORMATTER);
+        final LocalDate to = LocalDate.parse("18.07.2023", EpicTest.DATE_FORMATTER);
+
+        assertEquals(List.of(6, 7), ids(manager.getTasksBetween(from, to)));
+        assertEquals(List.of(5, 6, 7), ids(manager.getTasksOverlapping(from, to)));
+        assertEquals(List.of(7), ids(manager.getTasksOverlapping(from.plusDays(2), to)));
+        assertTrue(manager.getTasksBetween(to, from).isEmpty());
+        assertTrue(manager.getTasksBetween(LocalDate.EPOCH, LocalDate.EPOCH).isEmpty());
+        assertEquals(List.of(5), ids(manager.getTasksBetween(LocalDate.EPOCH, from)));
+
+        manager.deleteTaskById(5);
+        assertEquals(List.of(6, 7), ids(manager.getTasksOverlapping(from, to)));
+    }
+
+    @Test
+    void shouldFindEarliestFreeSlot() {
+        manager.createTask(new Task("Первая", "", NEW,
+                LocalDate.parse("10.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(1500L))); //#1
+        manager.createTask(new Task("Вторая", "", NEW,
+                LocalDate.parse("13.07.2023", EpicTest.DATE_FORMATTER), Duration.ofMinutes(60L))); //#2
+        final LocalDate notBefore = LocalDate.parse("09.07.2023", EpicTest.DATE_FORMATTER);
+
+        assertEquals(notBefore, manager.findEarliestSlot(Duration.ofMinutes(60L), notBefore));
+        assertEquals(LocalDate.parse("12.07.2023", EpicTest.DATE_FORMATTER),
+                manager.findEarliestSlot(Duration.ofMinutes(60L), notBefore.plusDays(1)));
+        final LocalDate slot = manager.findEarliestSlot(Duration.ofMinutes(1440L), notBefore);
+        assertEquals(LocalDate.parse("14.07.2023", EpicTest.DATE_FORMATTER), slot);
+        manager.createTask(new Task("Третья", "", NEW, slot, Duration.ofMinutes(1440L))); //#3
+
+        manager.deleteTaskById(1);
+        assertEquals(notBefore, manager.findEarliestSlot(Duration.ofMinutes(1440L * 3), notBefore));
+        assertEquals(LocalDate.parse("16.07.2023", EpicTest.DATE_FORMATTER),
+                manager.findEarliestSlot(Duration.ofMinutes(1440L * 5), notBefore));
+    }
+
+    @Test
+    void shouldKeepSnapshotUnchangedWhileManagerChanges() {
+        createAll();
+        TaskManagerSnapshot snapshot = manager.snapshot();
+        manager.deleteTaskById(1);
+        manager.deleteSubtaskById(5);
+        manager.createEpic(new Epic("Новый эпик", "")); //#7
+
+        assertEquals(getExpectedTasks(), snapshot.getTasks());
+        assertEquals(getExpectedEpics(), snapshot.getEpics());
+        assertEquals(getExpectedSubtasks(), snapshot.getSubtasks());
+        assertEquals(IN_PROGRESS, snapshot.getEpic(3).getTaskStatus());
+        assertEquals(List.of(4), ids(snapshot.getEpicsPage(3, 10)));
+
+        TaskManagerSnapshot next = manager.snapshot();
+        assertTrue(next.getVersion() > snapshot.getVersion());
+        assertEquals(List.of(2), ids(next.getTasks()));
+        assertEquals(List.of(6), ids(next.getSubtasks()));
+        assertEquals(List.of(3, 4, 7), ids(next.getEpics()));
+        assertEquals(DONE, next.getEpic(3).getTaskStatus());
+        assertNull(next.getTask(1));
+
+        manager.deleteAllEpics();
+        assertEquals(List.of(3, 4, 7), ids(next.getEpics()));
+        assertTrue(manager.snapshot().getEpics().isEmpty());
+    }
+
+    @Test
+    void shouldChangeVersionAndListsOnlyWhenTasksChange() {
+        createAll();
+        long version = manager.getVersion();
+        List<Task> tasks = manager.getTasksView();
+        List<Task> prioritized = manager.getPrioritizedTasksView();
+        manager.getTaskById(1);
+        manager.getEpicById(3);
+        assertEquals(version, manager.getVersion());
+        assertEquals(tasks, manager.getTasksView());
+        assertEquals(prioritized, manager.getPrioritizedTasksView());
+
+        Task task = manager.getTaskById(2);
+        task.setTaskStatus(DONE);
+        manager.updateTask(task);
+        assertTrue(manager.getVersion() > version);
+        assertEquals(DONE, manager.getTasksView().get(1).getTaskStatus());
+        assertEquals(DONE, manager.getListOfAllTasks().get(1).getTaskStatus());
+        assertEquals(IN_PROGRESS, tasks.get(1).getTaskStatus());
+
+        version = manager.getVersion();
+        manager.deleteSubtaskById(5);
+        assertTrue(manager.getVersion() > version);
+        assertEquals(DONE, manager.getEpicsView().get(0).getTaskStatus());
+        assertEquals(List.of(1, 2, 6), ids(manager.getPrioritizedTasks()));
+    }
+
+    @Test
+    void shouldReturnMostViewedTasks() {
+        createAll();
+        for (int i = 0; i < 3; i++) {
+            manager.getTaskById(2);
+        }
+        manager.getSubtaskById(6);
+        manager.getSubtaskById(6);
+        manager.getEpicById(3);
+
+        assertEquals(List.of(2, 6), ids(manager.getHotTasks(2)));
+        assertEquals(List.of(2, 6, 3), ids(manager.getHotTasks(10)));
+        manager.deleteTaskById(2);
+        assertEquals(List.of(6, 3), ids(manager.getHotTasks(10)));
+    }
+
+    @Test
+    void shouldStopTrackingViewsOfDeletedTasks() {
+        List<Task> viewed = new ArrayList<>();
+        for (int i = 0; i < Managers.HOT_TASKS_CAPACITY; i++) {
+            viewed.add(new Task("Задача " + i, "", NEW));
+        }
+        manager.createAll(viewed);
+        for (Task task : viewed) {
+            manager.getTaskById(task.getId());
+            manager.getTaskById(task.getId());
+        }
+        for (int i = 0; i < viewed.size() / 2; i++) {
+            manager.deleteTaskById(viewed.get(i).getId());
+        }
+        manager.deleteAllTasks();
+        manager.recordView(viewed.get(0).getId());
+        Task task = new Task("Новая", "", NEW);
+        manager.createTask(task);
+        manager.getTaskById(task.getId());
+
+        assertEquals(List.of(task.getId()), ids(manager.getHotTasks(10)));
+    }
+
+    @Test
+    void shouldCountRecordedViewsWithoutHistory() {
+        createAll();
+        manager.getTaskById(1);
+        manager.recordView(6);
+        manager.recordView(6);
+
+        assertEquals(List.of(6, 1), ids(manager.getHotTasks(10)));
+        assertEquals(List.of(1), ids(manager.getHistory()));
+    }
+
+    List<Integer> ids(List<? extends Task> tasks) {
+        return tasks.stream().map(Task::getId).collect(Collectors.toList());
+    }
+
     List<Task> getExpectedTasks() {
         Task firstTask = new Task("Прочитать книгу", "", NEW);
         firstTask.setId(1);
@@ -0,0 +1,206 @@
+package util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Множество int с открытой адресацией: элементы хранятся в одном массиве без упаковки.
+ * Пустая ячейка помечается значением Integer.MIN_VALUE, само это значение хранится отдельным флагом.
+ */
+public class IntHashSet {
+    private static final int DEFAULT_CAPACITY = 4;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int FREE = Integer.MIN_VALUE;
+
+    private int[] elements;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    private boolean hasFreeValue;
+
+    public IntHashSet() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    public IntHashSet(IntHashSet other) {
+        elements = other.elements.clone();
+        mask = other.mask;
+        size = other.size;
+        resizeThreshold = other.resizeThreshold;
+        hasFreeValue = other.hasFreeValue;
+    }
+
+    public boolean contains(int value) {
+        if (value == FREE) {
+            return hasFreeValue;
+        }
+        return findSlot(value) >= 0;
+    }
+
+    public boolean add(int value) {
+        if (value == FREE) {
+            if (hasFreeValue) {
+                return false;
+            }
+            hasFreeValue = true;
+            size++;
+            return true;
+        }
+        int slot = hash(value) & mask;
+        while (elements[slot] != FREE) {
+            if (elements[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        elements[slot] = value;
+        if (++size > resizeThreshold) {
+            rehash(elements.length * 2);
+        }
+        return true;
+    }
+
+    public boolean remove(int value) {
+        if (value == FREE) {
+            if (!hasFreeValue) {
+                return false;
+            }
+            hasFreeValue = false;
+            size--;
+            return true;
+        }
+        int slot = findSlot(value);
+        if (slot < 0) {
+            return false;
+        }
+        removeSlot(slot);
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(elements, FREE);
+        hasFreeValue = false;
+        size = 0;
+    }
+
+    public void forEach(IntConsumer action) {
+        if (hasFreeValue) {
+            action.accept(FREE);
+        }
+        for (int element : elements) {
+            if (element != FREE) {
+                action.accept(element);
+            }
+        }
+    }
+
+    public int[] toSortedArray() {
+        int[] result = new int[size];
+        int index = 0;
+        if (hasFreeValue) {
+            result[index++] = FREE;
+        }
+        for (int element : elements) {
+            if (element != FREE) {
+                result[index++] = element;
+            }
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        IntHashSet other = (IntHashSet) o;
+        if (size != other.size || hasFreeValue != other.hasFreeValue) {
+            return false;
+        }
+        for (int element : elements) {
+            if (element != FREE && !other.contains(element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = hasFreeValue ? FREE : 0;
+        for (int element : elements) {
+            if (element != FREE) {
+                hashCode += element;
+            }
+        }
+        return hashCode;
+    }
+
+    static int hash(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    static int tableSizeFor(int expectedSize, float loadFactor) {
+        int capacity = Integer.highestOneBit(Math.max(2, (int) Math.ceil(expectedSize / loadFactor)) - 1) << 1;
+        return Math.max(capacity, 2);
+    }
+
+    private int findSlot(int value) {
+        int slot = hash(value) & mask;
+        while (elements[slot] != FREE) {
+            if (elements[slot] == value) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void removeSlot(int slot) {
+        int free = slot;
+        int current = slot;
+        while (true) {
+            current = (current + 1) & mask;
+            if (elements[current] == FREE) {
+                break;
+            }
+            int ideal = hash(elements[current]) & mask;
+            if (((current - ideal) & mask) >= ((current - free) & mask)) {
+                elements[free] = elements[current];
+                free = current;
+            }
+        }
+        elements[free] = FREE;
+        size--;
+    }
+
+    private void allocate(int capacity) {
+        elements = new int[capacity];
+        Arrays.fill(elements, FREE);
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int capacity) {
+        int[] oldElements = elements;
+        allocate(capacity);
+        for (int element : oldElements) {
+            if (element != FREE) {
+                int slot = hash(element) & mask;
+                while (elements[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                elements[slot] = element;
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Отображение int -> int с открытой адресацией: ключи и значения хранятся в двух массивах без упаковки.
+ * Отсутствие ключа обозначается значением missingValue. Удаление сдвигает следующие элементы цепочки,
+ * поэтому после заполнения таблицы вставки и удаления не создают объектов.
+ */
+public class IntIntHashMap {
+    private static final int DEFAULT_CAPACITY = 4;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int FREE = Integer.MIN_VALUE;
+
+    private final int missingValue;
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    private boolean hasFreeKey;
+    private int freeKeyValue;
+
+    public IntIntHashMap(int missingValue) {
+        this(DEFAULT_CAPACITY, missingValue);
+    }
+
+    public IntIntHashMap(int expectedSize, int missingValue) {
+        this.missingValue = missingValue;
+        allocate(IntHashSet.tableSizeFor(expectedSize, LOAD_FACTOR));
+    }
+
+    public int getMissingValue() {
+        return missingValue;
+    }
+
+    public int get(int key) {
+        if (key == FREE) {
+            return hasFreeKey ? freeKeyValue : missingValue;
+        }
+        int slot = findSlot(key);
+        return slot < 0 ? missingValue : values[slot];
+    }
+
+    public boolean containsKey(int key) {
+        return key == FREE ? hasFreeKey : findSlot(key) >= 0;
+    }
+
+    // Возвращает прежнее значение или missingValue
+    public int put(int key, int value) {
+        if (key == FREE) {
+            int oldValue = hasFreeKey ? freeKeyValue : missingValue;
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                size++;
+            }
+            freeKeyValue = value;
+            return oldValue;
+        }
+        int slot = IntHashSet.hash(key) & mask;
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                int oldValue = values[slot];
+                values[slot] = value;
+                return oldValue;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length * 2);
+        }
+        return missingValue;
+    }
+
+    // Возвращает удалённое значение или missingValue
+    public int remove(int key) {
+        if (key == FREE) {
+            if (!hasFreeKey) {
+                return missingValue;
+            }
+            hasFreeKey = false;
+            size--;
+            return freeKeyValue;
+        }
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return missingValue;
+        }
+        int oldValue = values[slot];
+        removeSlot(slot);
+        return oldValue;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        hasFreeKey = false;
+        size = 0;
+    }
+
+    private int findSlot(int key) {
+        int slot = IntHashSet.hash(key) & mask;
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void removeSlot(int slot) {
+        int free = slot;
+        int current = slot;
+        while (true) {
+            current = (current + 1) & mask;
+            if (keys[current] == FREE) {
+                break;
+            }
+            int ideal = IntHashSet.hash(keys[current]) & mask;
+            if (((current - ideal) & mask) >= ((current - free) & mask)) {
+                keys[free] = keys[current];
+                values[free] = values[current];
+                free = current;
+            }
+        }
+        keys[free] = FREE;
+        size--;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = IntHashSet.hash(oldKeys[i]) & mask;
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
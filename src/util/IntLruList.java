@@ -0,0 +1,147 @@
+package util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * Ограниченный список различных int в порядке последнего добавления: повторное добавление переносит значение
+ * в конец, при переполнении вытесняется самое старое. Значения и связи хранятся в массивах, которые растут
+ * по мере заполнения, освобождённые ячейки используются повторно.
+ */
+public class IntLruList {
+    private static final int NONE = -1;
+    private static final int INITIAL_SLOTS = 8;
+
+    private final int capacity;
+    private final IntIntHashMap valueToSlot;
+    private int[] values;
+    private int[] prev;
+    private int[] next;
+    private int head = NONE;
+    private int tail = NONE;
+    private int freeSlot = NONE;
+    private int usedSlots;
+
+    public IntLruList(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Размер списка должен быть положительным");
+        }
+        this.capacity = capacity;
+        int slots = Math.min(capacity, INITIAL_SLOTS);
+        valueToSlot = new IntIntHashMap(slots, NONE);
+        values = new int[slots];
+        prev = new int[slots];
+        next = new int[slots];
+    }
+
+    // Возвращает true, если ради нового значения пришлось вытеснить самое старое
+    public boolean add(int value) {
+        int slot = valueToSlot.get(value);
+        boolean isEvicted = false;
+        if (slot != NONE) {
+            unlink(slot);
+        } else if (valueToSlot.size() == capacity) {
+            isEvicted = true;
+            slot = head;
+            unlink(slot);
+            valueToSlot.remove(values[slot]);
+            valueToSlot.put(value, slot);
+        } else {
+            slot = allocateSlot();
+            valueToSlot.put(value, slot);
+        }
+        values[slot] = value;
+        linkLast(slot);
+        return isEvicted;
+    }
+
+    public boolean remove(int value) {
+        int slot = valueToSlot.remove(value);
+        if (slot == NONE) {
+            return false;
+        }
+        unlink(slot);
+        next[slot] = freeSlot;
+        freeSlot = slot;
+        return true;
+    }
+
+    public boolean contains(int value) {
+        return valueToSlot.containsKey(value);
+    }
+
+    public int size() {
+        return valueToSlot.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Значение, которое будет вытеснено первым; список не должен быть пустым
+    public int first() {
+        if (head == NONE) {
+            throw new NoSuchElementException();
+        }
+        return values[head];
+    }
+
+    // Обход от самого старого значения к последнему добавленному без создания массива
+    public void forEach(IntConsumer action) {
+        for (int slot = head; slot != NONE; slot = next[slot]) {
+            action.accept(values[slot]);
+        }
+    }
+
+    // Значения от самого старого к последнему добавленному
+    public int[] toArray() {
+        int[] result = new int[valueToSlot.size()];
+        int index = 0;
+        for (int slot = head; slot != NONE; slot = next[slot]) {
+            result[index++] = values[slot];
+        }
+        return result;
+    }
+
+    private int allocateSlot() {
+        if (freeSlot != NONE) {
+            int slot = freeSlot;
+            freeSlot = next[slot];
+            return slot;
+        }
+        if (usedSlots == values.length) {
+            int length = (int) Math.min(capacity, values.length * 2L);
+            values = Arrays.copyOf(values, length);
+            prev = Arrays.copyOf(prev, length);
+            next = Arrays.copyOf(next, length);
+        }
+        return usedSlots++;
+    }
+
+    private void linkLast(int slot) {
+        prev[slot] = tail;
+        next[slot] = NONE;
+        if (tail == NONE) {
+            head = slot;
+        } else {
+            next[tail] = slot;
+        }
+        tail = slot;
+    }
+
+    private void unlink(int slot) {
+        int before = prev[slot];
+        int after = next[slot];
+        if (before == NONE) {
+            head = after;
+        } else {
+            next[before] = after;
+        }
+        if (after == NONE) {
+            tail = before;
+        } else {
+            prev[after] = before;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Неизменяемое упорядоченное отображение int -> V на декартовом дереве, приоритет узла — перемешанный ключ.
+ * Изменение возвращает новую версию и копирует только путь от корня до узла, O(log n) узлов;
+ * остальные узлы общие для всех версий, поэтому любая полученная ранее версия остаётся целой.
+ */
+public final class PersistentIntMap<V> {
+    private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(null);
+
+    private final Node<V> root;
+
+    private PersistentIntMap(Node<V> root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    public V get(int key) {
+        Node<V> node = root;
+        while (node != null) {
+            if (key == node.key) {
+                return node.value;
+            }
+            node = key < node.key ? node.left : node.right;
+        }
+        return null;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    public PersistentIntMap<V> put(int key, V value) {
+        Node<V> newRoot = put(root, key, value, priority(key));
+        return newRoot == root ? this : new PersistentIntMap<>(newRoot);
+    }
+
+    public PersistentIntMap<V> remove(int key) {
+        Node<V> newRoot = remove(root, key);
+        return newRoot == root ? this : new PersistentIntMap<>(newRoot);
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    // Все значения по возрастанию ключа
+    public List<V> values() {
+        List<V> values = new ArrayList<>(size());
+        collect(root, Long.MIN_VALUE, Integer.MAX_VALUE, values);
+        return values;
+    }
+
+    // Не более limit значений с ключами больше afterKey по возрастанию ключа
+    public List<V> valuesAfter(int afterKey, int limit) {
+        List<V> values = new ArrayList<>(Math.min(Math.max(limit, 0), size()));
+        collect(root, afterKey, limit, values);
+        return values;
+    }
+
+    private static <V> void collect(Node<V> node, long afterKey, int limit, List<V> values) {
+        while (node != null && values.size() < limit) {
+            if (node.key <= afterKey) {
+                node = node.right;
+                continue;
+            }
+            collect(node.left, afterKey, limit, values);
+            if (values.size() < limit) {
+                values.add(node.value);
+            }
+            node = node.right;
+        }
+    }
+
+    private static <V> Node<V> put(Node<V> node, int key, V value, int priority) {
+        if (node == null) {
+            return new Node<>(key, value, priority, null, null);
+        }
+        if (key == node.key) {
+            return node.value == value ? node : new Node<>(key, value, node.priority, node.left, node.right);
+        }
+        if (key < node.key) {
+            Node<V> left = put(node.left, key, value, priority);
+            if (left.priority > node.priority) {
+                // новый узел поднимается над текущим
+                return new Node<>(left.key, left.value, left.priority, left.left,
+                        new Node<>(node.key, node.value, node.priority, left.right, node.right));
+            }
+            return new Node<>(node.key, node.value, node.priority, left, node.right);
+        }
+        Node<V> right = put(node.right, key, value, priority);
+        if (right.priority > node.priority) {
+            return new Node<>(right.key, right.value, right.priority,
+                    new Node<>(node.key, node.value, node.priority, node.left, right.left), right.right);
+        }
+        return new Node<>(node.key, node.value, node.priority, node.left, right);
+    }
+
+    private static <V> Node<V> remove(Node<V> node, int key) {
+        if (node == null) {
+            return null;
+        }
+        if (key == node.key) {
+            return merge(node.left, node.right);
+        }
+        if (key < node.key) {
+            Node<V> left = remove(node.left, key);
+            return left == node.left ? node : new Node<>(node.key, node.value, node.priority, left, node.right);
+        }
+        Node<V> right = remove(node.right, key);
+        return right == node.right ? node : new Node<>(node.key, node.value, node.priority, node.left, right);
+    }
+
+    // Слияние деревьев, все ключи left меньше ключей right
+    private static <V> Node<V> merge(Node<V> left, Node<V> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            return new Node<>(left.key, left.value, left.priority, left.left, merge(left.right, right));
+        }
+        return new Node<>(right.key, right.value, right.priority, merge(left, right.left), right.right);
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    // Перемешивание ключа (финальный шаг MurmurHash3) — взаимно однозначно, поэтому приоритеты не совпадают
+    private static int priority(int key) {
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static final class Node<V> {
+        final int key;
+        final V value;
+        final int priority;
+        final Node<V> left;
+        final Node<V> right;
+        final int size;
+
+        Node(int key, V value, int priority, Node<V> left, Node<V> right) {
+            this.key = key;
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + size(left) + size(right);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Упорядоченное множество int на отсортированном массиве. Идентификаторы выдаются по возрастанию,
+ * поэтому добавление почти всегда — запись в конец за O(1); поиск позиции — бинарный, O(log n);
+ * удаление сдвигает хвост массива.
+ */
+public class SortedIntSet {
+    private static final int DEFAULT_CAPACITY = 8;
+
+    private int[] elements = new int[DEFAULT_CAPACITY];
+    private int size;
+
+    public SortedIntSet() {
+    }
+
+    public SortedIntSet(SortedIntSet other) {
+        elements = Arrays.copyOf(other.elements, Math.max(other.size, DEFAULT_CAPACITY));
+        size = other.size;
+    }
+
+    public boolean add(int value) {
+        if (size > 0 && elements[size - 1] < value) {
+            ensureCapacity();
+            elements[size++] = value;
+            return true;
+        }
+        int index = Arrays.binarySearch(elements, 0, size, value);
+        if (index >= 0) {
+            return false;
+        }
+        index = -index - 1;
+        ensureCapacity();
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = value;
+        size++;
+        return true;
+    }
+
+    public boolean remove(int value) {
+        int index = Arrays.binarySearch(elements, 0, size, value);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    // Удаление набора значений за один проход по массиву
+    public void removeAll(int[] sortedValues) {
+        if (sortedValues.length == 0) {
+            return;
+        }
+        if (sortedValues.length == 1) {
+            remove(sortedValues[0]);
+            return;
+        }
+        int write = 0;
+        int other = 0;
+        for (int read = 0; read < size; read++) {
+            int value = elements[read];
+            while (other < sortedValues.length && sortedValues[other] < value) {
+                other++;
+            }
+            if (other == sortedValues.length || sortedValues[other] != value) {
+                elements[write++] = value;
+            }
+        }
+        size = write;
+    }
+
+    public boolean contains(int value) {
+        return Arrays.binarySearch(elements, 0, size, value) >= 0;
+    }
+
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Индекс " + index + " при размере " + size);
+        }
+        return elements[index];
+    }
+
+    // Позиция первого элемента, строго большего value
+    public int indexAfter(int value) {
+        int index = Arrays.binarySearch(elements, 0, size, value);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    // Позиция первого элемента, не меньшего value, начиная с from: экспоненциальный поиск, затем бинарный.
+    // Стоимость — O(log d), где d — расстояние от from до результата
+    public int indexAtLeast(int value, int from) {
+        if (from >= size || elements[from] >= value) {
+            return from;
+        }
+        int low = from;
+        int step = 1;
+        while (low + step < size && elements[low + step] < value) {
+            low += step;
+            step <<= 1;
+        }
+        int index = Arrays.binarySearch(elements, low + 1, Math.min(low + step, size), value);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(elements[i]);
+        }
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    private void ensureCapacity() {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, elements.length * 2);
+        }
+    }
+}
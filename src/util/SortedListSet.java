@@ -0,0 +1,63 @@
+package util;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+
+/**
+ * Уже отсортированный список без повторов, представленный как SortedSet только для чтения.
+ * TreeSet.addAll и конструктор TreeSet(SortedSet) строят дерево из такой последовательности за O(n)
+ * без сравнений. Порядок элементов не проверяется; поддиапазоны не поддерживаются.
+ */
+public final class SortedListSet<T> extends AbstractSet<T> implements SortedSet<T> {
+    private final List<T> sorted;
+    private final Comparator<? super T> comparator;
+
+    public SortedListSet(List<T> sorted, Comparator<? super T> comparator) {
+        this.sorted = Collections.unmodifiableList(sorted);
+        this.comparator = comparator;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return sorted.iterator();
+    }
+
+    @Override
+    public int size() {
+        return sorted.size();
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public T first() {
+        return sorted.get(0);
+    }
+
+    @Override
+    public T last() {
+        return sorted.get(sorted.size() - 1);
+    }
+
+    @Override
+    public SortedSet<T> subSet(T fromElement, T toElement) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        throw new UnsupportedOperationException();
+    }
+}
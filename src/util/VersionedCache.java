@@ -0,0 +1,36 @@
+package util;
+
+import java.util.function.Supplier;
+
+/**
+ * Значение, вычисленное для определённой версии данных: пока версия не изменилась, возвращается готовое.
+ * Версию нужно получать до вычисления значения — тогда изменение во время вычисления не даст закэшировать
+ * устаревший результат под новой версией. Параллельные вычисления допустимы, сохраняется любое из них.
+ */
+public final class VersionedCache<T> {
+    private volatile Entry<T> entry;
+
+    public T get(long version, Supplier<T> loader) {
+        Entry<T> current = entry;
+        if (current != null && current.version == version) {
+            return current.value;
+        }
+        T value = loader.get();
+        entry = new Entry<>(version, value);
+        return value;
+    }
+
+    public void clear() {
+        entry = null;
+    }
+
+    private static final class Entry<T> {
+        final long version;
+        final T value;
+
+        Entry(long version, T value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+}